@@ -0,0 +1,44 @@
+plugins {
+    java
+}
+
+java {
+    targetCompatibility = JavaVersion.VERSION_17
+    sourceCompatibility = JavaVersion.VERSION_17
+}
+
+repositories {
+    mavenCentral()
+}
+
+val jmhVersion = "1.37"
+
+dependencies {
+    implementation(project(":formula-java"))
+    implementation(project(":jackson-dataformat-formula"))
+    implementation("com.fasterxml.jackson.core:jackson-databind:2.17.2")
+    implementation("org.openjdk.jmh:jmh-core:$jmhVersion")
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+}
+
+// Runs the benchmarks, writing JSON results to build/results/jmh/results.json.
+//   -Pjmh.includes=<regex>   only run matching benchmarks
+//   -Pjmh.gc                 add the allocation profiler (-prof gc)
+//   -Pjmh.args="..."         any other JMH options, e.g. "-f 1 -wi 2 -i 3"
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+
+    val resultsFile = layout.buildDirectory.file("results/jmh/results.json").get().asFile
+    args(listOfNotNull(project.findProperty("jmh.includes")?.toString()))
+    args("-rf", "json", "-rff", resultsFile.absolutePath)
+    if (project.hasProperty("jmh.gc")) {
+        args("-prof", "gc")
+    }
+    project.findProperty("jmh.args")?.toString()?.split(" ")?.filter { it.isNotBlank() }?.let { args(it) }
+    doFirst {
+        resultsFile.parentFile.mkdirs()
+    }
+}
@@ -0,0 +1,72 @@
+package org.formula.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.formula.BatchEvaluator;
+import org.formula.Formula;
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolves one formula against every row of a batch, one {@code resolve} call at a time and through the batch API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"ARITHMETIC", "LOGIC"})
+    public FormulaShape shape;
+
+    @Param({"10000"})
+    public int rows;
+
+    private List<DataContext> contexts;
+    private Resolvable formula;
+    private BatchEvaluator parallel;
+
+    @Setup
+    public void setUp() {
+        contexts = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            contexts.add(Contexts.create(10).set("key_1", i));
+        }
+        formula = Formula.parse(shape.formula());
+        parallel = BatchEvaluator.of(formula).parallel();
+    }
+
+    @Benchmark
+    public List<ResolvedValue> resolveEach() {
+        List<ResolvedValue> results = new ArrayList<>(rows);
+        for (DataContext context : contexts) {
+            results.add(formula.resolve(context));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<ResolvedValue> resolveAll() {
+        return formula.resolveAll(contexts);
+    }
+
+    @Benchmark
+    public List<ResolvedValue> resolveAllParallel() {
+        return parallel.evaluate(contexts);
+    }
+}
@@ -0,0 +1,78 @@
+package org.formula.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.formula.Formula;
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.formula.context.MutableDataContext;
+import org.formula.parse.shuntingyard.ColumnarEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates a pricing formula over the same rows held as data contexts and as primitive columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnarBenchmark {
+    private static final String FORMULA = "@price * @qty - @discount";
+
+    @Param({"100000"})
+    public int rows;
+
+    private Resolvable formula;
+    private ColumnarEvaluator columnar;
+    private List<DataContext> contexts;
+    private Map<String, Object> columns;
+    private double[] result;
+
+    @Setup
+    public void setUp() {
+        double[] price = new double[rows];
+        int[] qty = new int[rows];
+        double[] discount = new double[rows];
+        contexts = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            price[i] = i % 100 + 0.5;
+            qty[i] = i % 7;
+            discount[i] = i % 3;
+            MutableDataContext context = MutableDataContext.create();
+            context.set("price", price[i]);
+            context.set("qty", qty[i]);
+            context.set("discount", discount[i]);
+            contexts.add(context);
+        }
+        columns = Map.of("price", price, "qty", qty, "discount", discount);
+        formula = Formula.parse(FORMULA);
+        columnar = ColumnarEvaluator.compile(formula);
+        result = new double[rows];
+    }
+
+    @Benchmark
+    public List<ResolvedValue> resolveAll() {
+        return formula.resolveAll(contexts);
+    }
+
+    @Benchmark
+    public double[] columnar() {
+        columnar.evaluate(rows, columns, result);
+        return result;
+    }
+}
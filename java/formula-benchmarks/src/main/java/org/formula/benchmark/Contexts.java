@@ -0,0 +1,41 @@
+package org.formula.benchmark;
+
+import org.formula.Formula;
+import org.formula.context.MutableDataContext;
+
+final class Contexts {
+
+    /**
+     * A context with {@code size} numeric keys named {@code key_0} and up, plus the other keys {@link FormulaShape}
+     * formulas read.
+     */
+    static MutableDataContext create(int size) {
+        MutableDataContext context = MutableDataContext.create();
+        fill(context, size);
+        return context;
+    }
+
+    static <T extends MutableDataContext> T fill(T context, int size) {
+        for (int i = 0; i < size; i++) {
+            context.set("key_" + i, i);
+        }
+        context.set("flag", true)
+                .set("off", false)
+                .set("name", "Formula")
+                .set("title", "Benchmark");
+        return context;
+    }
+
+    /**
+     * Adds {@code step_0} to {@code step_<depth>}, where every step reads the one before it.
+     */
+    static <T extends MutableDataContext> T chain(T context, int depth) {
+        context.set("step_0", 1);
+        for (int i = 1; i <= depth; i++) {
+            context.set("step_" + i, Formula.parse("@step_" + (i - 1) + " + 1"));
+        }
+        return context;
+    }
+
+    private Contexts() {}
+}
@@ -0,0 +1,64 @@
+package org.formula.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.formula.ResolvedValue;
+import org.formula.context.DependencyTrackingDataContext;
+import org.formula.context.MutableDataContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Changes the start of a chain of formulas and reads the end of it again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DependencyChainBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int depth;
+
+    private String last;
+    private MutableDataContext plain;
+    private MutableDataContext memoizing;
+    private DependencyTrackingDataContext tracking;
+    private int tick = 0;
+
+    @Setup
+    public void setUp() {
+        last = "step_" + depth;
+        plain = Contexts.chain(MutableDataContext.create(), depth);
+        memoizing = Contexts.chain(MutableDataContext.createMemoizing(), depth);
+        tracking = Contexts.chain(MutableDataContext.createDependencyTracking(), depth);
+    }
+
+    @Benchmark
+    public ResolvedValue plain() {
+        plain.set("step_0", tick++);
+        return plain.get(last);
+    }
+
+    @Benchmark
+    public ResolvedValue memoizing() {
+        memoizing.set("step_0", tick++);
+        return memoizing.get(last);
+    }
+
+    @Benchmark
+    public ResolvedValue dependencyTracking() {
+        tracking.set("step_0", tick++);
+        return tracking.get(last);
+    }
+}
@@ -0,0 +1,23 @@
+package org.formula.benchmark;
+
+/**
+ * Representative formulas, resolved against a context built by {@link Contexts#create(int)}.
+ */
+public enum FormulaShape {
+    ARITHMETIC("(@key_1 + @key_2) * 3 - @key_3 / 2 ^ 2"),
+    LOGIC("@flag AND (@key_1 > 5 OR @key_2 <= 3) AND !@off"),
+    LIST("sum(@key_1, @key_2, @key_3, 4, 5) + max(@key_4, @key_5, 6)"),
+    STRING("concat(@name; ' '; @title; ' '; ordinal(@key_3))"),
+    WILDCARD("sum(@{key_1*})"),
+    REPEATED("max(@key_1, @key_2) + @key_1 * 2 + if(@key_1 > 1 AND true; @key_1; @key_2) + 1 + 2");
+
+    private final String formula;
+
+    FormulaShape(String formula) {
+        this.formula = formula;
+    }
+
+    public String formula() {
+        return formula;
+    }
+}
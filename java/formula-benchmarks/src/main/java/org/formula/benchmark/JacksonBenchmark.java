@@ -0,0 +1,66 @@
+package org.formula.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.concurrent.TimeUnit;
+import org.formula.Resolvable;
+import org.formula.context.DataContext;
+import org.formula.jackson.dataformat.FormulaModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonBenchmark {
+
+    @Param({"10", "1000"})
+    public int contextSize;
+
+    private ObjectMapper mapper;
+    private String contextJson;
+    private String formulaJson;
+
+    @Setup
+    public void setUp() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new FormulaModule());
+
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < contextSize; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\"key_").append(i).append("\":");
+            if (i % 2 == 0) {
+                json.append(i);
+            } else {
+                json.append("\"{@key_").append(i - 1).append(" * 2}\"");
+            }
+        }
+        contextJson = json.append('}').toString();
+        formulaJson = "\"{" + FormulaShape.ARITHMETIC.formula() + "}\"";
+    }
+
+    @Benchmark
+    public DataContext dataContext() throws JsonProcessingException {
+        return mapper.readValue(contextJson, DataContext.class);
+    }
+
+    @Benchmark
+    public Resolvable resolvable() throws JsonProcessingException {
+        return mapper.readValue(formulaJson, Resolvable.class);
+    }
+}
@@ -0,0 +1,36 @@
+package org.formula.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.formula.optimize.FormulaOptimizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptimizeBenchmark {
+
+    @Param({
+            "any(any(@a, any(@b, @c)), @d)",
+            "any(@a, false, @b, @c, false)",
+            "@a - (@b / @c)",
+            "(@a+@b)[testing]"
+    })
+    public String formula;
+
+    @Benchmark
+    public String optimize() {
+        return FormulaOptimizer.optimize(formula);
+    }
+}
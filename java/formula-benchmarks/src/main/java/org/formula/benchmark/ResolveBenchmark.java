@@ -0,0 +1,76 @@
+package org.formula.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.formula.Formula;
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.formula.context.IndexedDataContext;
+import org.formula.context.SymbolTable;
+import org.formula.optimize.FormulaOptimizer;
+import org.formula.parse.shuntingyard.FormulaCompiler;
+import org.formula.parse.shuntingyard.ShuntingYard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveBenchmark {
+
+    @Param
+    public FormulaShape shape;
+
+    @Param({"10", "1000", "100000"})
+    public int contextSize;
+
+    private DataContext context;
+    private Resolvable formula;
+    private Resolvable compiled;
+    private Resolvable optimized;
+    private DataContext indexedContext;
+    private Resolvable bound;
+
+    @Setup
+    public void setUp() {
+        context = Contexts.create(contextSize);
+        formula = Formula.parse(shape.formula());
+        compiled = FormulaCompiler.compile(formula);
+        optimized = FormulaOptimizer.optimize(formula);
+        SymbolTable symbols = SymbolTable.create();
+        bound = ((ShuntingYard) formula).bind(symbols);
+        indexedContext = Contexts.fill(IndexedDataContext.create(symbols), contextSize);
+    }
+
+    @Benchmark
+    public ResolvedValue resolve() {
+        return formula.resolve(context);
+    }
+
+    @Benchmark
+    public ResolvedValue resolveOptimized() {
+        return optimized.resolve(context);
+    }
+
+    @Benchmark
+    public ResolvedValue resolveBound() {
+        return bound.resolve(indexedContext);
+    }
+
+    @Benchmark
+    public ResolvedValue resolveCompiled() {
+        return compiled.resolve(context);
+    }
+}
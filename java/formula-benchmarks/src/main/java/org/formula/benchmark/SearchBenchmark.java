@@ -0,0 +1,49 @@
+package org.formula.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int contextSize;
+
+    @Param({"key_1*", "*_1", "key_1"})
+    public String pattern;
+
+    private DataContext context;
+
+    @Setup
+    public void setUp() {
+        context = Contexts.create(contextSize);
+    }
+
+    @Benchmark
+    public List<ResolvedValue> search() {
+        return context.search(pattern).toList();
+    }
+
+    @Benchmark
+    public ResolvedValue get() {
+        return context.get("key_1");
+    }
+}
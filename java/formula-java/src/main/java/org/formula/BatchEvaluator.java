@@ -0,0 +1,86 @@
+package org.formula;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.formula.context.DataContext;
+
+/**
+ * Resolves one formula against many data contexts, returning the results in input order.
+ * <p>
+ * Rows go through {@link Resolvable#resolveAll(List)}, so per-formula setup happens once per batch rather than once
+ * per row. With {@link #parallel(ForkJoinPool)} the batch is split into chunks of {@link #chunkSize(int)} rows that
+ * run on the pool, in which case the formula and contexts must be safe to resolve from several threads at once.
+ */
+public final class BatchEvaluator {
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private final Resolvable resolvable;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public static BatchEvaluator of(Resolvable resolvable) {
+        return new BatchEvaluator(resolvable, null, DEFAULT_CHUNK_SIZE);
+    }
+
+    public BatchEvaluator parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    public BatchEvaluator parallel(ForkJoinPool pool) {
+        return new BatchEvaluator(resolvable, pool, chunkSize);
+    }
+
+    public BatchEvaluator chunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        return new BatchEvaluator(resolvable, pool, chunkSize);
+    }
+
+    public List<ResolvedValue> evaluate(List<? extends DataContext> contexts) {
+        if (pool == null || contexts.size() <= chunkSize) {
+            return resolvable.resolveAll(contexts);
+        }
+        ResolvedValue[] results = new ResolvedValue[contexts.size()];
+        pool.invoke(new Chunk(contexts, results, 0, contexts.size()));
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends DataContext> contexts;
+        private final ResolvedValue[] results;
+        private final int from;
+        private final int to;
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                List<ResolvedValue> values = resolvable.resolveAll(contexts.subList(from, to));
+                for (int i = 0; i < values.size(); i++) {
+                    results[from + i] = values.get(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Chunk(contexts, results, from, middle), new Chunk(contexts, results, middle, to));
+        }
+
+        Chunk(List<? extends DataContext> contexts, ResolvedValue[] results, int from, int to) {
+            this.contexts = contexts;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private BatchEvaluator(Resolvable resolvable, ForkJoinPool pool, int chunkSize) {
+        this.resolvable = resolvable;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+}
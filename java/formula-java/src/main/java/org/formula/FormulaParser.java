@@ -1,19 +1,37 @@
 package org.formula;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Consumer;
-import org.formula.context.DataContext;
+import java.util.stream.Stream;
+import org.formula.parse.shuntingyard.ArithmeticFunction;
+import org.formula.parse.shuntingyard.ArithmeticOperator;
 import org.formula.parse.shuntingyard.Associativity;
+import org.formula.parse.shuntingyard.ComparisonOperator;
+import org.formula.parse.shuntingyard.FormulaCatalog;
+import org.formula.parse.shuntingyard.LogicFunction;
+import org.formula.parse.shuntingyard.LogicOperator;
 import org.formula.parse.shuntingyard.Operator1;
 import org.formula.parse.shuntingyard.Operator2;
 import org.formula.parse.shuntingyard.ShuntingYardParser;
+import org.formula.parse.shuntingyard.VariableResolver;
 import org.formula.util.Ordinal;
 
 public class FormulaParser {
+    private static final int PARSE_CHUNK_SIZE = 256;
+
     private final ShuntingYardParser parser = ShuntingYardParser.create();
+    private volatile ParseCache cache = null;
 
     public static FormulaParser createDefault() {
         return new FormulaParser()
@@ -28,66 +46,149 @@ public class FormulaParser {
 
     public FormulaParser addCustom(Consumer<ShuntingYardParser> modifyParserFn) {
         modifyParserFn.accept(parser);
+        ParseCache current = cache;
+        if (current != null) {
+            current.clear();
+        }
+        return this;
+    }
+
+    /**
+     * Keeps up to {@code maximumSize} parsed formulas, so parsing the same text again returns the same
+     * {@link Resolvable}. The least recently used formula is dropped when the cache is full.
+     */
+    public FormulaParser cache(int maximumSize) {
+        cache = new ParseCache(maximumSize);
         return this;
     }
 
+    public ParseCacheStats cacheStats() {
+        ParseCache current = cache;
+        return current == null ? ParseCacheStats.DISABLED : current.stats();
+    }
+
     public Resolvable parse(String formulaText) {
         if (formulaText.isBlank()) {
             return Resolvable.empty();
         }
+        ParseCache current = cache;
+        if (current != null) {
+            return current.get(formulaText, parser::parse);
+        }
         return parser.parse(formulaText);
     }
 
+    public ParsedFormulas parseAll(Map<String, String> formulaTexts) {
+        return parseAll(formulaTexts.entrySet().stream(), ForkJoinPool.commonPool());
+    }
+
+    public ParsedFormulas parseAll(Stream<? extends Map.Entry<String, String>> formulaTexts) {
+        return parseAll(formulaTexts, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses formulas by key on {@code pool}, parsing each distinct text once. A formula that does not parse is
+     * reported in {@link ParsedFormulas#errors()} rather than stopping the others. When a key appears more than once,
+     * its last formula is kept.
+     */
+    public ParsedFormulas parseAll(Stream<? extends Map.Entry<String, String>> formulaTexts, ForkJoinPool pool) {
+        Map<String, String> texts = new LinkedHashMap<>();
+        formulaTexts.forEachOrdered(entry -> texts.put(entry.getKey(), entry.getValue()));
+
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> distinctTexts = new ArrayList<>();
+        for (String text : texts.values()) {
+            if (indexes.putIfAbsent(text, distinctTexts.size()) == null) {
+                distinctTexts.add(text);
+            }
+        }
+
+        Object[] parsed = new Object[distinctTexts.size()];
+        ParseChunk all = new ParseChunk(distinctTexts, parsed, 0, parsed.length);
+        if (parsed.length <= PARSE_CHUNK_SIZE) {
+            all.compute();
+        } else {
+            pool.invoke(all);
+        }
+
+        Map<String, Resolvable> formulas = new LinkedHashMap<>();
+        Map<String, RuntimeException> errors = new LinkedHashMap<>();
+        texts.forEach((key, text) -> {
+            Object result = parsed[indexes.get(text)];
+            if (result instanceof RuntimeException e) {
+                errors.put(key, e);
+            } else {
+                formulas.put(key, (Resolvable) result);
+            }
+        });
+        return new ParsedFormulas(Collections.unmodifiableMap(formulas), Collections.unmodifiableMap(errors));
+    }
+
+    /**
+     * Writes formulas parsed by this parser to a catalog that {@link #openCatalog(Path)} reads back without parsing
+     * them again.
+     */
+    public void writeCatalog(Path path, Map<String, ? extends Resolvable> formulas) throws IOException {
+        FormulaCatalog.write(path, formulas, parser);
+    }
+
+    public FormulaCatalog openCatalog(Path path) throws IOException {
+        return FormulaCatalog.open(path, parser);
+    }
+
     public FormulaParser addBasicMath() {
         parser
-                .operator("^", 4, Associativity.RIGHT, (a, b) -> ResolvedValue.of(Math.pow(a.asDecimal(), b.asDecimal())))
-                .operator("*", 3, Associativity.LEFT, (a, b) -> ResolvedValue.of(a.asDecimal() * b.asDecimal()))
-                .operator("/", 3, Associativity.LEFT, (a, b) -> ResolvedValue.of(a.asDecimal() / b.asDecimal()))
-                .operator("+", 2, Associativity.LEFT, FormulaParser::addReduceFn)
+                .numericOperator("^", 4, Associativity.RIGHT, ArithmeticOperator.POWER)
+                .numericOperator("*", 3, Associativity.LEFT, ArithmeticOperator.MULTIPLY)
+                .numericOperator("/", 3, Associativity.LEFT, ArithmeticOperator.DIVIDE)
+                .numericOperator("+", 2, Associativity.LEFT, ArithmeticOperator.ADD)
                 .biOperator("-",
-                        new Operator1("-", 4, Associativity.LEFT, a -> ResolvedValue.of(-a.asDecimal())),
-                        new Operator2("-", 2, Associativity.LEFT, (a, b) -> ResolvedValue.of(a.asDecimal() - b.asDecimal())))
-                .function("abs", (ResolvedValue a) -> ResolvedValue.of(Math.abs(a.asDecimal())))
+                        new Operator1("-", 4, Associativity.LEFT, ArithmeticFunction.NEGATE),
+                        new Operator2("-", 2, Associativity.LEFT, ArithmeticOperator.SUBTRACT))
+                .numericFunction("abs", ArithmeticFunction.ABS)
                 .function("min", FormulaParser::minFn)
                 .function("max", FormulaParser::maxFn)
                 .function("maxeach", FormulaParser::maxEachFn)
                 .function("mineach", FormulaParser::minEachFn)
                 .function("clamp", FormulaParser::clampFn)
-                .function("floor", (ResolvedValue a) -> ResolvedValue.of(Math.floor(a.asDecimal())))
-                .function("ceil", (ResolvedValue a) -> ResolvedValue.of(Math.ceil(a.asDecimal())))
-                .function("sum", FormulaParser::sumFn);
+                .numericFunction("floor", ArithmeticFunction.FLOOR)
+                .numericFunction("ceil", ArithmeticFunction.CEIL)
+                .function("sum", FormulaParser::sumFn)
+                .pure("min", "max", "maxeach", "mineach", "clamp", "sum");
         return this;
     }
 
     public FormulaParser addBasicLogic() {
         this.parser
-                .operator("!", 2, Associativity.LEFT, (ResolvedValue a) -> ResolvedValue.of(!a.asBoolean()))
-                .operator("<", 3, Associativity.LEFT, (ResolvedValue a, ResolvedValue b) -> ResolvedValue.of(a.asDecimal() < b.asDecimal()))
-                .operator("<=", 3, Associativity.LEFT, (ResolvedValue a, ResolvedValue b) -> ResolvedValue.of(a.asDecimal() <= b.asDecimal()))
-                .operator(">", 3, Associativity.LEFT, (ResolvedValue a, ResolvedValue b) -> ResolvedValue.of(a.asDecimal() > b.asDecimal()))
-                .operator(">=", 3, Associativity.LEFT, (ResolvedValue a, ResolvedValue b) -> ResolvedValue.of(a.asDecimal() >= b.asDecimal()))
+                .operator("!", 2, Associativity.LEFT, LogicFunction.NOT)
+                .comparisonOperator("<", 3, Associativity.LEFT, ComparisonOperator.LESS)
+                .comparisonOperator("<=", 3, Associativity.LEFT, ComparisonOperator.LESS_OR_EQUAL)
+                .comparisonOperator(">", 3, Associativity.LEFT, ComparisonOperator.GREATER)
+                .comparisonOperator(">=", 3, Associativity.LEFT, ComparisonOperator.GREATER_OR_EQUAL)
                 .operator("==", 3, Associativity.LEFT, (ResolvedValue a, ResolvedValue b) -> ResolvedValue.of(a.equals(b)))
                 .operator("!=", 3, Associativity.LEFT, (ResolvedValue a, ResolvedValue b) -> ResolvedValue.of(!a.equals(b)))
-                .operator("AND", 1, Associativity.LEFT, (ResolvedValue a, ResolvedValue b) -> ResolvedValue.of(a.asBoolean() && b.asBoolean()))
-                .operator("OR", 1, Associativity.LEFT, (ResolvedValue a, ResolvedValue b) -> ResolvedValue.of(a.asBoolean() || b.asBoolean()))
+                .lazyOperator("AND", 1, Associativity.LEFT, LogicOperator.AND)
+                .lazyOperator("OR", 1, Associativity.LEFT, LogicOperator.OR)
                 .term("true", () -> ResolvedValue.TRUE)
                 .term("false", () -> ResolvedValue.FALSE)
-                .function("if", (ResolvedValue a, ResolvedValue b, ResolvedValue c) -> a.asBoolean() ? b : c)
-                .function("any", FormulaParser::anyFn)
-                .function("all", FormulaParser::allFn);
+                .lazyFunction("if", (a, b, c) -> a.execute().asBoolean() ? b.execute() : c.execute())
+                .functionN("any", FormulaParser::anyFn)
+                .functionN("all", FormulaParser::allFn)
+                .pure("!", "==", "!=", "AND", "OR", "if", "any", "all");
         return this;
     }
 
     public FormulaParser addDefaultVariables() {
         this.parser
-                .variable("@", FormulaParser::variableFn)
-                .variable("@{", "}", FormulaParser::variableFn);
+                .variable("@", VariableResolver.lookup())
+                .variable("@{", "}", VariableResolver.lookup());
         return this;
     }
 
     public FormulaParser addDefaultComments() {
         this.parser
-                .comment("[", "]", (value, comment) -> NamedResolvedValue.of(value, comment.substring(1, comment.length() - 1), "[", "]"));
+                .comment("[", "]", (value, comment) -> NamedResolvedValue.of(value, comment.substring(1, comment.length() - 1), "[", "]"))
+                .pure("[");
         return this;
     }
 
@@ -99,7 +200,8 @@ public class FormulaParser {
 
     public FormulaParser addLists() {
         this.parser
-                .operator(",", 1, Associativity.LEFT, FormulaParser::mergeLists);
+                .operator(",", 1, Associativity.LEFT, FormulaParser::mergeLists)
+                .pure(",");
         return this;
     }
 
@@ -107,8 +209,9 @@ public class FormulaParser {
         this.parser
                 .function("signed", (ResolvedValue a) -> ResolvedValue.of((a.asNumber() < 0 ? "" : "+") + a.asNumber()))
 
-                .function("concat", FormulaParser::concatFn)
-                .function("ordinal", (ResolvedValue a) -> ResolvedValue.of(Ordinal.toString(a.asNumber())));
+                .functionN("concat", FormulaParser::concatFn)
+                .function("ordinal", (ResolvedValue a) -> ResolvedValue.of(Ordinal.toString(a.asNumber())))
+                .pure("signed", "concat", "ordinal");
         return this;
     }
 
@@ -192,24 +295,10 @@ public class FormulaParser {
         return ResolvedValue.of(merged);
     }
 
-    private static ResolvedValue variableFn(DataContext context, String key) {
-        if (key.contains("*")) {
-            return ResolvedValue.of(context.search(key).toList());
-        }
-        return context.get(key);
-    }
-
     private static ResolvedValue concatFn(List<ResolvedValue> values) {
         return ResolvedValue.concat(values);
     }
 
-    private static ResolvedValue addReduceFn(ResolvedValue a, ResolvedValue b) {
-        if (!a.hasValue() && !b.hasValue()) {
-            return ResolvedValue.ZERO;
-        }
-        return ResolvedValue.of(a.asDecimal() + b.asDecimal());
-    }
-
     private static ResolvedValue maxReduceFn(ResolvedValue a, ResolvedValue b) {
         return checkForNone(a,b).orElseGet(() -> a.asDecimal() > b.asDecimal() ? a : b);
     }
@@ -224,5 +313,37 @@ public class FormulaParser {
         return Optional.empty();
     }
 
+    private class ParseChunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> texts;
+        private final Object[] parsed;
+        private final int from;
+        private final int to;
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARSE_CHUNK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        parsed[i] = parse(texts.get(i));
+                    } catch (RuntimeException e) {
+                        parsed[i] = e;
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseChunk(texts, parsed, from, middle), new ParseChunk(texts, parsed, middle, to));
+        }
+
+        ParseChunk(List<String> texts, Object[] parsed, int from, int to) {
+            this.texts = texts;
+            this.parsed = parsed;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
     private FormulaParser() {}
 }
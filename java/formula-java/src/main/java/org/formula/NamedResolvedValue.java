@@ -26,6 +26,18 @@ public class NamedResolvedValue extends ResolvedValue {
         return name;
     }
 
+    public ResolvedValue value() {
+        return value;
+    }
+
+    public String prefix() {
+        return prefix;
+    }
+
+    public String suffix() {
+        return suffix;
+    }
+
     @Override
     public int asNumber() {
         return value.asNumber();
@@ -41,6 +53,11 @@ public class NamedResolvedValue extends ResolvedValue {
         return value.asBoolean();
     }
 
+    @Override
+    public Object asObject() {
+        return value.asObject();
+    }
+
     @Override
     public String toString() {
         return value.asText() + prefix + asName() + suffix;
@@ -0,0 +1,59 @@
+package org.formula;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Least recently used cache of parsed formulas, keyed by formula text. Formulas are parsed outside the lock, so two
+ * threads parsing the same new formula may both parse it; only one result is kept.
+ */
+class ParseCache {
+    private final int maximumSize;
+    private final Map<String, Resolvable> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    ParseCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Parse cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Resolvable> eldest) {
+                if (size() > ParseCache.this.maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    Resolvable get(String formulaText, Function<String, Resolvable> parseFn) {
+        synchronized (this) {
+            Resolvable cached = entries.get(formulaText);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        Resolvable parsed = parseFn.apply(formulaText);
+        synchronized (this) {
+            Resolvable existing = entries.putIfAbsent(formulaText, parsed);
+            return existing != null ? existing : parsed;
+        }
+    }
+
+    synchronized ParseCacheStats stats() {
+        return new ParseCacheStats(hits, misses, evictions, entries.size());
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+}
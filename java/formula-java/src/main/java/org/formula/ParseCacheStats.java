@@ -0,0 +1,5 @@
+package org.formula;
+
+public record ParseCacheStats(long hits, long misses, long evictions, int size) {
+    public static final ParseCacheStats DISABLED = new ParseCacheStats(0, 0, 0, 0);
+}
@@ -0,0 +1,25 @@
+package org.formula;
+
+import java.util.Map;
+import org.formula.context.MutableDataContext;
+
+/**
+ * Formulas parsed by {@link FormulaParser#parseAll(Map)}, by key, with the errors of those that did not parse: a
+ * {@link org.formula.parse.tree.ParseException} for most, or whatever else parsing threw, such as the
+ * {@link NumberFormatException} of an integer that does not fit.
+ */
+public record ParsedFormulas(Map<String, Resolvable> formulas, Map<String, RuntimeException> errors) {
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    /**
+     * Sets every formula that parsed in {@code context} with a single {@link MutableDataContext#setAll(Map)}. A
+     * concurrent context publishes them all in one step.
+     */
+    public <T extends MutableDataContext> T loadInto(T context) {
+        context.setAll(formulas);
+        return context;
+    }
+}
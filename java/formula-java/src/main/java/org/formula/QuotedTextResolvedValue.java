@@ -28,6 +28,18 @@ public class QuotedTextResolvedValue extends ResolvedValue {
         return startQuote + text.asText() + endQuote;
     }
 
+    public ResolvedValue value() {
+        return text;
+    }
+
+    public String startQuote() {
+        return startQuote;
+    }
+
+    public String endQuote() {
+        return endQuote;
+    }
+
     @Override
     public int asNumber() {
         return text.asNumber();
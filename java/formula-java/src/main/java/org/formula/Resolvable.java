@@ -1,6 +1,9 @@
 package org.formula;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import org.formula.context.DataContext;
 
 public interface Resolvable {
@@ -35,8 +38,28 @@ public interface Resolvable {
 
     ResolvedValue resolve(DataContext context);
 
+    /**
+     * Resolves this against each of {@code contexts}, returning the results in the same order. Implementations can
+     * override this to share their setup between contexts.
+     */
+    default List<ResolvedValue> resolveAll(List<? extends DataContext> contexts) {
+        List<ResolvedValue> results = new ArrayList<>(contexts.size());
+        for (DataContext context : contexts) {
+            results.add(resolve(context));
+        }
+        return Collections.unmodifiableList(results);
+    }
+
     String asFormula();
 
+    /**
+     * The data context keys read when this is resolved. Wildcard keys (such as {@code foo*}) are included as they
+     * were written.
+     */
+    default Set<String> dependencies() {
+        return Set.of();
+    }
+
     static Resolvable concat(Resolvable... values) {
         return concat(List.of(values));
     }
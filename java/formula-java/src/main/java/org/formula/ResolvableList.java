@@ -1,8 +1,11 @@
 package org.formula;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import org.formula.context.DataContext;
 
 public class ResolvableList implements Resolvable {
@@ -20,12 +23,33 @@ public class ResolvableList implements Resolvable {
         return this;
     }
 
+    /**
+     * Returns a new list with {@code value} appended, leaving this one unchanged.
+     */
+    public ResolvableList with(Resolvable value) {
+        ResolvableList list = new ResolvableList();
+        list.values.addAll(values);
+        list.values.add(value);
+        return list;
+    }
+
+    public List<Resolvable> asList() {
+        return Collections.unmodifiableList(values);
+    }
+
     @Override
     public ResolvedValue resolve(DataContext context) {
         return ResolvedValue.concat(values.stream()
                 .map(resolvable -> resolvable.resolve(context)));
     }
 
+    @Override
+    public Set<String> dependencies() {
+        Set<String> dependencies = new LinkedHashSet<>();
+        values.forEach(value -> dependencies.addAll(value.dependencies()));
+        return dependencies;
+    }
+
     @Override
     public String asFormula() {
         StringBuilder builder = new StringBuilder();
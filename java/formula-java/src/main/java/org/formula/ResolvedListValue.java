@@ -38,6 +38,11 @@ class ResolvedListValue extends ResolvedValue {
         return Collections.unmodifiableList(values);
     }
 
+    @Override
+    public Object asObject() {
+        return asList();
+    }
+
     private ResolvedValue latest() {
         if (values.isEmpty()) {
             return ResolvedValue.none();
@@ -82,6 +82,14 @@ public abstract class ResolvedValue implements Comparable<ResolvedValue> {
         return List.of(this);
     }
 
+    /**
+     * Returns the value as the Java type closest to it: an {@link Integer}, {@link Double}, {@link Boolean},
+     * {@link String}, a {@link List} of values, or {@code null} if there is no value.
+     */
+    public Object asObject() {
+        return asText();
+    }
+
     public boolean hasValue() {
         return true;
     }
@@ -170,6 +178,11 @@ public abstract class ResolvedValue implements Comparable<ResolvedValue> {
             return value != 0;
         }
 
+        @Override
+        public Object asObject() {
+            return value;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
@@ -223,6 +236,11 @@ public abstract class ResolvedValue implements Comparable<ResolvedValue> {
             return value != 0;
         }
 
+        @Override
+        public Object asObject() {
+            return value;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
@@ -274,6 +292,11 @@ public abstract class ResolvedValue implements Comparable<ResolvedValue> {
             return true;
         }
 
+        @Override
+        public Object asObject() {
+            return Boolean.TRUE;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
@@ -323,6 +346,11 @@ public abstract class ResolvedValue implements Comparable<ResolvedValue> {
             return false;
         }
 
+        @Override
+        public Object asObject() {
+            return Boolean.FALSE;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
@@ -382,6 +410,11 @@ public abstract class ResolvedValue implements Comparable<ResolvedValue> {
             return List.of();
         }
 
+        @Override
+        public Object asObject() {
+            return null;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
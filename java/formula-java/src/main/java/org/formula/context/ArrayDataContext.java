@@ -0,0 +1,124 @@
+package org.formula.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.formula.Resolvable;
+import org.formula.ResolvableList;
+import org.formula.ResolvedValue;
+
+class ArrayDataContext implements IndexedDataContext, ResolvableSource {
+    private final SymbolTable symbols;
+    private final NavigableSet<String> sortedKeys = new TreeSet<>();
+    private Resolvable[] values;
+
+    @Override
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    @Override
+    public ResolvedValue get(int id) {
+        Resolvable resolvable = id >= 0 && id < values.length ? values[id] : null;
+        if (resolvable == null) {
+            return ResolvedValue.none();
+        }
+        return resolvable.resolve(this);
+    }
+
+    @Override
+    public ResolvedValue get(String key) {
+        return get(symbols.id(key));
+    }
+
+    @Override
+    public Stream<String> keys() {
+        return IntStream.range(0, values.length)
+                .filter(id -> values[id] != null)
+                .mapToObj(symbols::key);
+    }
+
+    /**
+     * Wildcard searches return their values in key order, like the other mutable contexts, and only scan the keys
+     * starting with the pattern's literal prefix.
+     */
+    @Override
+    public Stream<ResolvedValue> search(String pattern) {
+        if (!pattern.contains("*")) {
+            return Stream.of(get(pattern));
+        }
+        return matchingKeys(pattern).stream()
+                .map(this::get);
+    }
+
+    @Override
+    public List<String> matchingKeys(String pattern) {
+        WildcardPattern wildcard = WildcardPattern.of(pattern);
+        List<String> keys = new ArrayList<>();
+        for (String key : sortedKeys.tailSet(wildcard.prefix(), true)) {
+            if (!key.startsWith(wildcard.prefix())) {
+                break;
+            }
+            if (wildcard.matches(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public ArrayDataContext set(int id, Resolvable value) {
+        if (id >= values.length) {
+            values = Arrays.copyOf(values, Math.max(id + 1, symbols.size()));
+        }
+        if (values[id] == null) {
+            sortedKeys.add(symbols.key(id));
+        }
+        values[id] = value;
+        return this;
+    }
+
+    @Override
+    public ArrayDataContext set(String key, Resolvable value) {
+        return set(symbols.intern(key), value);
+    }
+
+    @Override
+    public MutableDataContext push(String key, Resolvable value) {
+        int id = symbols.intern(key);
+        Resolvable existing = id < values.length ? values[id] : null;
+        if (existing instanceof ResolvableList resolvableList) {
+            resolvableList.add(value);
+            return this;
+        }
+        ResolvableList list = new ResolvableList();
+        if (existing != null) {
+            list.add(existing);
+        }
+        list.add(value);
+        return set(id, list);
+    }
+
+    @Override
+    public Resolvable resolvable(String key) {
+        int id = symbols.id(key);
+        return id != SymbolTable.NO_ID && id < values.length ? values[id] : null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        keys().forEach(key -> builder.append(builder.length() > 1 ? ", " : "").append(key).append('=')
+                .append(resolvable(key)));
+        return builder.append('}').toString();
+    }
+
+    ArrayDataContext(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.values = new Resolvable[symbols.size()];
+    }
+}
@@ -0,0 +1,144 @@
+package org.formula.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.formula.Resolvable;
+import org.formula.ResolvableList;
+import org.formula.ResolvedValue;
+
+/**
+ * A {@link StaticDataContext} that can be shared between threads without external locking.
+ * <p>
+ * Consistency model:
+ * <ul>
+ *     <li>{@code get} only blocks while a {@code setAll} is being applied, and sees the value of the latest write to
+ *     that key that has completed.</li>
+ *     <li>{@code set} and {@code push} are atomic per key. Concurrent pushes to the same key are never lost, and a
+ *     pushed list is never changed once it is visible; every push replaces it with a copy.</li>
+ *     <li>There is no snapshot across keys. A formula that reads several keys while they are being written may see
+ *     some of them before a write and some after.</li>
+ *     <li>{@code setAll} publishes its batch in one step. Once a read sees one of its values, every later read sees
+ *     all of them, and {@code keys} and {@code search} include either all of its keys or none.</li>
+ *     <li>{@code keys} and {@code search} are otherwise weakly consistent. They never fail, include every key whose
+ *     {@code set} completed before they started, and may or may not include keys set while they run.</li>
+ * </ul>
+ */
+class ConcurrentDataContext extends StaticDataContext {
+    private final ConcurrentMap<String, Resolvable> data;
+    private final StampedLock batch = new StampedLock();
+
+    @Override
+    public ResolvedValue get(String key) {
+        Resolvable resolvable = resolvable(key);
+        if (resolvable == null) {
+            return ResolvedValue.none();
+        }
+        return resolvable.resolve(this);
+    }
+
+    @Override
+    public Resolvable resolvable(String key) {
+        // the same as read(), without a lambda on the path every variable takes
+        long stamp = batch.tryOptimisticRead();
+        Resolvable resolvable = data.get(key);
+        if (!batch.validate(stamp)) {
+            stamp = batch.readLock();
+            try {
+                resolvable = data.get(key);
+            } finally {
+                batch.unlockRead(stamp);
+            }
+        }
+        return resolvable;
+    }
+
+    @Override
+    public Stream<String> keys() {
+        return read(() -> new ArrayList<>(data.keySet())).stream();
+    }
+
+    @Override
+    public List<String> matchingKeys(String pattern) {
+        return read(() -> super.matchingKeys(pattern));
+    }
+
+    /**
+     * Applies every value while holding the batch lock, so readers wait for the whole batch rather than see part of
+     * it.
+     */
+    @Override
+    public StaticDataContext setAll(Map<String, ? extends Resolvable> values) {
+        long stamp = batch.writeLock();
+        try {
+            return super.setAll(values);
+        } finally {
+            batch.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public MutableDataContext push(String key, Resolvable value) {
+        data.compute(key, (k, existing) -> {
+            if (existing == null) {
+                return new ResolvableList().add(value);
+            } else if (existing instanceof ResolvableList resolvableList) {
+                return resolvableList.with(value);
+            }
+            return new ResolvableList().add(existing).add(value);
+        });
+        addKey(key);
+        return this;
+    }
+
+    @Override
+    public MutableDataContext push(String key, ResolvedValue value) {
+        while (true) {
+            Resolvable existing = data.get(key);
+            ResolvedValue current = existing == null ? ResolvedValue.none() : existing.resolve(this);
+            Resolvable updated = Resolvable.just(ResolvedValue.concat(current, value));
+            // compare by identity: replace(key, existing, updated) would accept an equal list pushed in the meantime
+            boolean[] swapped = new boolean[1];
+            data.compute(key, (k, present) -> {
+                swapped[0] = present == existing;
+                return swapped[0] ? updated : present;
+            });
+            if (swapped[0]) {
+                addKey(key);
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Reads without locking, and again under the read lock if a batch was being applied meanwhile.
+     */
+    private <T> T read(Supplier<T> reader) {
+        long stamp = batch.tryOptimisticRead();
+        T value = reader.get();
+        if (batch.validate(stamp)) {
+            return value;
+        }
+        stamp = batch.readLock();
+        try {
+            return reader.get();
+        } finally {
+            batch.unlockRead(stamp);
+        }
+    }
+
+    ConcurrentDataContext() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    private ConcurrentDataContext(ConcurrentMap<String, Resolvable> data) {
+        super(data, new ConcurrentSkipListSet<>());
+        this.data = data;
+    }
+}
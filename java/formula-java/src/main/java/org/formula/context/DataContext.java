@@ -1,8 +1,6 @@
 package org.formula.context;
 
 import java.util.Map;
-import java.util.function.Predicate;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import org.formula.Resolvable;
 import org.formula.ResolvedValue;
@@ -22,11 +20,9 @@ public interface DataContext {
             return Stream.of(get(pattern));
         }
 
-        Predicate<String> patternFilter = Pattern.compile("^%s$".formatted(pattern
-                        .replaceAll("\\*", ".*")))
-                .asMatchPredicate();
+        WildcardPattern wildcard = WildcardPattern.of(pattern);
         return keys()
-                .filter(patternFilter)
+                .filter(wildcard::matches)
                 .map(this::get);
     }
 }
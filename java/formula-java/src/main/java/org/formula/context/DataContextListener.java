@@ -0,0 +1,14 @@
+package org.formula.context;
+
+import java.util.Map;
+import org.formula.ResolvedValue;
+
+@FunctionalInterface
+public interface DataContextListener {
+
+    /**
+     * Called after a key is set or pushed to, with the new value of every key whose resolved value changed (in the
+     * order they were recomputed).
+     */
+    void changed(Map<String, ResolvedValue> changes);
+}
@@ -0,0 +1,225 @@
+package org.formula.context;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.formula.Resolvable;
+import org.formula.ResolveException;
+import org.formula.ResolvedValue;
+
+/**
+ * A {@link MutableDataContext} that keeps the resolved value of every key up to date as its inputs change.
+ * <p>
+ * The keys each value reads are taken from {@link Resolvable#dependencies()} and kept in a reverse index. Setting or
+ * pushing to a key recomputes that key, then only those downstream keys whose inputs actually changed, in dependency
+ * order. Listeners are told which values changed.
+ * <p>
+ * Values that read keys not listed in their dependencies (for example through a custom variable resolver) are not
+ * recomputed when those keys change.
+ */
+public class DependencyTrackingDataContext extends StaticDataContext {
+    private final Map<String, ResolvedValue> values = new HashMap<>();
+    private final Map<String, Set<String>> dependencies = new HashMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    private final Map<String, Set<String>> wildcardDependents = new HashMap<>();
+    private final Set<String> resolving = new HashSet<>();
+    private final List<DataContextListener> listeners = new CopyOnWriteArrayList<>();
+    private boolean pushing = false;
+
+    public DependencyTrackingDataContext addListener(DataContextListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public DependencyTrackingDataContext removeListener(DataContextListener listener) {
+        listeners.remove(listener);
+        return this;
+    }
+
+    public Set<String> dependenciesOf(String key) {
+        return Collections.unmodifiableSet(dependencies.getOrDefault(key, Set.of()));
+    }
+
+    public Set<String> dependentsOf(String key) {
+        Set<String> result = new LinkedHashSet<>(dependents.getOrDefault(key, Set.of()));
+        wildcardDependents.forEach((wildcard, keys) -> {
+            if (WildcardPattern.of(wildcard).matches(key)) {
+                result.addAll(keys);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public ResolvedValue get(String key) {
+        ResolvedValue value = values.get(key);
+        if (value != null) {
+            return value;
+        }
+        if (!containsKey(key)) {
+            return ResolvedValue.none();
+        }
+        if (!resolving.add(key)) {
+            throw new ResolveException("Circular reference to '%s'".formatted(key));
+        }
+        try {
+            value = super.get(key);
+            values.put(key, value);
+            return value;
+        } finally {
+            resolving.remove(key);
+        }
+    }
+
+    @Override
+    public DependencyTrackingDataContext set(String key, Resolvable value) {
+        super.set(key, value);
+        if (!pushing) {
+            changed(key);
+        }
+        return this;
+    }
+
+    @Override
+    public DependencyTrackingDataContext setAll(Map<String, ? extends Resolvable> values) {
+        values.forEach(this::set);
+        return this;
+    }
+
+    @Override
+    public DependencyTrackingDataContext push(String key, Resolvable value) {
+        pushing = true;
+        try {
+            super.push(key, value);
+        } finally {
+            pushing = false;
+        }
+        changed(key);
+        return this;
+    }
+
+    private void changed(String key) {
+        updateDependencies(key, resolvable(key).dependencies());
+
+        List<String> order = new ArrayList<>();
+        boolean cyclic = sortDependents(key, order);
+        Map<String, ResolvedValue> previousValues = new HashMap<>();
+        if (cyclic) {
+            // cached values inside a cycle would hide it, so resolve everything downstream from scratch
+            order.forEach(next -> previousValues.put(next, values.remove(next)));
+        }
+
+        Map<String, ResolvedValue> changes = new LinkedHashMap<>();
+        Set<String> stale = new HashSet<>(cyclic ? order : List.of(key));
+        for (String next : order) {
+            if (!stale.contains(next)) {
+                continue;
+            }
+            ResolvedValue previous = cyclic ? previousValues.get(next) : values.remove(next);
+            ResolvedValue current = tryResolve(next);
+            if (!sameValue(previous, current)) {
+                if (current != null) {
+                    changes.put(next, current);
+                }
+                stale.addAll(dependentsOf(next));
+            }
+        }
+
+        if (!changes.isEmpty()) {
+            Map<String, ResolvedValue> published = Collections.unmodifiableMap(changes);
+            listeners.forEach(listener -> listener.changed(published));
+        }
+    }
+
+    private void updateDependencies(String key, Set<String> keyDependencies) {
+        Set<String> previous = dependencies.put(key, new LinkedHashSet<>(keyDependencies));
+        if (previous != null) {
+            for (String dependency : previous) {
+                removeDependent(dependency.contains("*") ? wildcardDependents : dependents, dependency, key);
+            }
+        }
+        for (String dependency : keyDependencies) {
+            if (dependency.contains("*")) {
+                wildcardDependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(key);
+            } else {
+                dependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(key);
+            }
+        }
+    }
+
+    private void removeDependent(Map<String, Set<String>> index, String dependency, String key) {
+        Set<String> keys = index.get(dependency);
+        if (keys == null) {
+            return;
+        }
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            index.remove(dependency);
+        }
+    }
+
+    /**
+     * Collects the key and everything downstream of it in dependency order, returning whether a cycle was found.
+     */
+    private boolean sortDependents(String key, List<String> order) {
+        Set<String> visited = new HashSet<>();
+        Set<String> inProgress = new HashSet<>();
+        Deque<Iterator<String>> pending = new ArrayDeque<>();
+        Deque<String> path = new ArrayDeque<>();
+        boolean cyclic = false;
+
+        visited.add(key);
+        inProgress.add(key);
+        path.push(key);
+        pending.push(dependentsOf(key).iterator());
+        while (!pending.isEmpty()) {
+            Iterator<String> next = pending.peek();
+            if (next.hasNext()) {
+                String dependent = next.next();
+                if (inProgress.contains(dependent)) {
+                    cyclic = true;
+                } else if (visited.add(dependent)) {
+                    inProgress.add(dependent);
+                    path.push(dependent);
+                    pending.push(dependentsOf(dependent).iterator());
+                }
+            } else {
+                pending.pop();
+                String done = path.pop();
+                inProgress.remove(done);
+                order.add(done);
+            }
+        }
+        Collections.reverse(order);
+        return cyclic;
+    }
+
+    private ResolvedValue tryResolve(String key) {
+        try {
+            return get(key);
+        } catch (RuntimeException e) {
+            // left unresolved, so the error is raised again when the key is read
+            return null;
+        }
+    }
+
+    private static boolean sameValue(ResolvedValue a, ResolvedValue b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getClass() == b.getClass() && a.equals(b) && a.toString().equals(b.toString());
+    }
+
+    DependencyTrackingDataContext() {
+    }
+}
@@ -0,0 +1,255 @@
+package org.formula.context;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Persistent hash array mapped trie from keys to values. Every update returns a new trie that shares all of its
+ * untouched nodes with the original, so an update copies at most one small node per level.
+ */
+final class HashTrie<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final HashTrie<?> EMPTY = new HashTrie<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    @SuppressWarnings("unchecked")
+    static <V> HashTrie<V> empty() {
+        return (HashTrie<V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(String key) {
+        return (V) root.find(0, hash(key), key);
+    }
+
+    HashTrie<V> put(String key, V value) {
+        boolean[] added = new boolean[1];
+        Node updated = root.put(0, hash(key), key, value, added);
+        if (updated == root) {
+            return this;
+        }
+        return new HashTrie<>(updated, added[0] ? size + 1 : size);
+    }
+
+    HashTrie<V> remove(String key) {
+        Node updated = root.remove(0, hash(key), key);
+        if (updated == root) {
+            return this;
+        }
+        return new HashTrie<>(updated == null ? BitmapNode.EMPTY : updated, size - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<String, V> action) {
+        root.forEach((BiConsumer<String, Object>) action);
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int index(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    private static Node merge(int shift, String key1, Object value1, int hash2, String key2, Object value2) {
+        int hash1 = hash(key1);
+        if (hash1 == hash2) {
+            return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+        }
+        boolean[] added = new boolean[1];
+        return BitmapNode.EMPTY
+                .put(shift, hash1, key1, value1, added)
+                .put(shift, hash2, key2, value2, added);
+    }
+
+    private interface Node {
+        Object find(int shift, int hash, String key);
+        Node put(int shift, int hash, String key, Object value, boolean[] added);
+        Node remove(int shift, int hash, String key);
+        void forEach(BiConsumer<String, Object> action);
+    }
+
+    /**
+     * Up to 32 slots, one per 5-bit hash fragment, packed by a bitmap. Each slot holds a key and its value, or a
+     * {@code null} key and the child node for the next 5 bits.
+     */
+    private record BitmapNode(int bitmap, Object[] array) implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        @Override
+        public Object find(int shift, int hash, String key) {
+            int bit = 1 << index(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int slot = slot(bit);
+            Object existingKey = array[slot];
+            if (existingKey == null) {
+                return ((Node) array[slot + 1]).find(shift + BITS, hash, key);
+            }
+            return key.equals(existingKey) ? array[slot + 1] : null;
+        }
+
+        @Override
+        public Node put(int shift, int hash, String key, Object value, boolean[] added) {
+            int bit = 1 << index(hash, shift);
+            int slot = slot(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] updated = new Object[array.length + 2];
+                System.arraycopy(array, 0, updated, 0, slot);
+                updated[slot] = key;
+                updated[slot + 1] = value;
+                System.arraycopy(array, slot, updated, slot + 2, array.length - slot);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, updated);
+            }
+
+            Object existingKey = array[slot];
+            Object existingValue = array[slot + 1];
+            if (existingKey == null) {
+                Node child = (Node) existingValue;
+                Node updated = child.put(shift + BITS, hash, key, value, added);
+                return updated == child ? this : with(slot, null, updated);
+            }
+            if (key.equals(existingKey)) {
+                return existingValue == value ? this : with(slot, existingKey, value);
+            }
+            added[0] = true;
+            return with(slot, null,
+                    merge(shift + BITS, (String) existingKey, existingValue, hash, key, value));
+        }
+
+        @Override
+        public Node remove(int shift, int hash, String key) {
+            int bit = 1 << index(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int slot = slot(bit);
+            Object existingKey = array[slot];
+            if (existingKey == null) {
+                Node child = (Node) array[slot + 1];
+                Node updated = child.remove(shift + BITS, hash, key);
+                if (updated == child) {
+                    return this;
+                }
+                return updated == null ? without(bit, slot) : with(slot, null, updated);
+            }
+            if (!key.equals(existingKey)) {
+                return this;
+            }
+            return without(bit, slot);
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept((String) array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private int slot(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private BitmapNode with(int slot, Object key, Object value) {
+            Object[] updated = array.clone();
+            updated[slot] = key;
+            updated[slot + 1] = value;
+            return new BitmapNode(bitmap, updated);
+        }
+
+        private BitmapNode without(int bit, int slot) {
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] updated = new Object[array.length - 2];
+            System.arraycopy(array, 0, updated, 0, slot);
+            System.arraycopy(array, slot + 2, updated, slot, array.length - slot - 2);
+            return new BitmapNode(bitmap & ~bit, updated);
+        }
+    }
+
+    /**
+     * Keys whose hashes are identical, kept as a flat list of key/value pairs.
+     */
+    private record CollisionNode(int hash, Object[] array) implements Node {
+
+        @Override
+        public Object find(int shift, int hash, String key) {
+            int slot = slot(key);
+            return slot < 0 ? null : array[slot + 1];
+        }
+
+        @Override
+        public Node put(int shift, int hash, String key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                return new BitmapNode(1 << index(this.hash, shift), new Object[] { null, this })
+                        .put(shift, hash, key, value, added);
+            }
+            int slot = slot(key);
+            if (slot >= 0) {
+                if (array[slot + 1] == value) {
+                    return this;
+                }
+                Object[] updated = array.clone();
+                updated[slot + 1] = value;
+                return new CollisionNode(hash, updated);
+            }
+            Object[] updated = Arrays.copyOf(array, array.length + 2);
+            updated[array.length] = key;
+            updated[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, updated);
+        }
+
+        @Override
+        public Node remove(int shift, int hash, String key) {
+            int slot = slot(key);
+            if (slot < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] updated = new Object[array.length - 2];
+            System.arraycopy(array, 0, updated, 0, slot);
+            System.arraycopy(array, slot + 2, updated, slot, array.length - slot - 2);
+            return new CollisionNode(hash, updated);
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept((String) array[i], array[i + 1]);
+            }
+        }
+
+        private int slot(String key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private HashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+}
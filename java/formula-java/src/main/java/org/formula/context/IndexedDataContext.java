@@ -0,0 +1,30 @@
+package org.formula.context;
+
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+
+/**
+ * A context that stores its values by the ids a {@link SymbolTable} gives their keys, so formulas bound to the same
+ * symbol table read them with an array load.
+ *
+ * @see org.formula.parse.shuntingyard.ShuntingYard#bind(SymbolTable)
+ */
+public interface IndexedDataContext extends MutableDataContext {
+
+    static IndexedDataContext create(SymbolTable symbols) {
+        return new ArrayDataContext(symbols);
+    }
+
+    SymbolTable symbols();
+
+    /**
+     * Returns the value of the key with the given id in {@link #symbols()}.
+     */
+    ResolvedValue get(int id);
+
+    IndexedDataContext set(int id, Resolvable value);
+
+    default IndexedDataContext set(int id, ResolvedValue value) {
+        return set(id, Resolvable.just(value));
+    }
+}
@@ -0,0 +1,176 @@
+package org.formula.context;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.formula.Resolvable;
+import org.formula.ResolveException;
+import org.formula.ResolvedValue;
+
+/**
+ * A {@link StaticDataContext} that caches the resolved value of every key.
+ * <p>
+ * While a key is being resolved, every key it reads is recorded as one of its dependencies (including keys that do
+ * not exist yet, and the key set itself for wildcard searches). Setting or pushing to a key drops the cached value of
+ * that key and of everything that transitively depends on it.
+ * <p>
+ * Long dependency chains are resolved without deep recursion: once nested lookups reach
+ * {@link #MAX_RESOLVE_DEPTH}, the innermost key is resolved first and cached, and the outer key is tried again.
+ */
+class MemoizingDataContext extends StaticDataContext {
+    private static final int MAX_RESOLVE_DEPTH = 256;
+
+    private final Map<String, ResolvedValue> cache = new HashMap<>();
+    private final Map<String, Set<String>> dependencies = new HashMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    private final Set<String> keySetDependents = new HashSet<>();
+    private final Deque<String> resolving = new ArrayDeque<>();
+
+    @Override
+    public ResolvedValue get(String key) {
+        recordDependency(key);
+
+        ResolvedValue cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (resolving.isEmpty()) {
+            return resolveDeferred(key);
+        }
+        if (resolving.size() >= MAX_RESOLVE_DEPTH) {
+            throw new DeferredResolve(key);
+        }
+        return resolve(key);
+    }
+
+    @Override
+    public Stream<String> keys() {
+        recordKeySetDependency();
+        return super.keys();
+    }
+
+    @Override
+    public Stream<ResolvedValue> search(String pattern) {
+        if (pattern.contains("*")) {
+            recordKeySetDependency();
+        }
+        return super.search(pattern);
+    }
+
+    @Override
+    public MemoizingDataContext set(String key, Resolvable value) {
+        boolean added = !containsKey(key);
+        super.set(key, value);
+        invalidate(key);
+        if (added) {
+            new HashSet<>(keySetDependents).forEach(this::invalidate);
+        }
+        return this;
+    }
+
+    /**
+     * Formulas that search the key set are invalidated once for the whole batch, not once per new key.
+     */
+    @Override
+    public MemoizingDataContext setAll(Map<String, ? extends Resolvable> values) {
+        boolean added = !values.keySet().stream().allMatch(this::containsKey);
+        super.setAll(values);
+        values.keySet().forEach(this::invalidate);
+        if (added) {
+            new HashSet<>(keySetDependents).forEach(this::invalidate);
+        }
+        return this;
+    }
+
+    @Override
+    public MutableDataContext push(String key, Resolvable value) {
+        super.push(key, value);
+        invalidate(key);
+        return this;
+    }
+
+    private ResolvedValue resolve(String key) {
+        resolving.push(key);
+        try {
+            ResolvedValue value = super.get(key);
+            cache.put(key, value);
+            return value;
+        } finally {
+            resolving.pop();
+        }
+    }
+
+    private ResolvedValue resolveDeferred(String key) {
+        Deque<String> deferred = new ArrayDeque<>();
+        deferred.push(key);
+        while (true) {
+            try {
+                ResolvedValue value = resolve(deferred.peek());
+                deferred.pop();
+                if (deferred.isEmpty()) {
+                    return value;
+                }
+            } catch (DeferredResolve e) {
+                if (deferred.contains(e.key)) {
+                    throw new ResolveException("Circular reference to '%s'".formatted(e.key));
+                }
+                deferred.push(e.key);
+            }
+        }
+    }
+
+    private void recordDependency(String key) {
+        String dependent = resolving.peek();
+        if (dependent == null) {
+            return;
+        }
+        dependencies.computeIfAbsent(dependent, k -> new HashSet<>()).add(key);
+        dependents.computeIfAbsent(key, k -> new HashSet<>()).add(dependent);
+    }
+
+    private void recordKeySetDependency() {
+        if (!resolving.isEmpty()) {
+            keySetDependents.add(resolving.peek());
+        }
+    }
+
+    private void invalidate(String key) {
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(key);
+        while (!pending.isEmpty()) {
+            String next = pending.pop();
+            cache.remove(next);
+            keySetDependents.remove(next);
+
+            Set<String> nextDependencies = dependencies.remove(next);
+            if (nextDependencies != null) {
+                for (String dependency : nextDependencies) {
+                    Set<String> dependencyDependents = dependents.get(dependency);
+                    if (dependencyDependents != null) {
+                        dependencyDependents.remove(next);
+                    }
+                }
+            }
+
+            Set<String> nextDependents = dependents.remove(next);
+            if (nextDependents != null) {
+                pending.addAll(nextDependents);
+            }
+        }
+    }
+
+    private static class DeferredResolve extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+
+        DeferredResolve(String key) {
+            super(null, null, false, false);
+            this.key = key;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.formula.context;
 
+import java.util.Map;
 import org.formula.Resolvable;
 import org.formula.ResolvedValue;
 
@@ -9,8 +10,36 @@ public interface MutableDataContext extends DataContext {
         return new StaticDataContext();
     }
 
+    static MutableDataContext createMemoizing() {
+        return new MemoizingDataContext();
+    }
+
+    static MutableDataContext createConcurrent() {
+        return new ConcurrentDataContext();
+    }
+
+    /**
+     * Creates a context whose own keys are layered over {@code parent}, which is neither copied nor changed.
+     */
+    static MutableDataContext createOverlay(DataContext parent) {
+        return new OverlayDataContext(parent);
+    }
+
+    static DependencyTrackingDataContext createDependencyTracking() {
+        return new DependencyTrackingDataContext();
+    }
+
     MutableDataContext set(String key, Resolvable value);
 
+    /**
+     * Sets every key in {@code values}, as one call rather than one per key. A context made by
+     * {@link #createConcurrent()} publishes them to other threads in one step.
+     */
+    default MutableDataContext setAll(Map<String, ? extends Resolvable> values) {
+        values.forEach(this::set);
+        return this;
+    }
+
     default MutableDataContext set(String key, ResolvedValue value) {
         return set(key, Resolvable.just(value));
     }
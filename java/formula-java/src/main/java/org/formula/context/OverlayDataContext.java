@@ -0,0 +1,134 @@
+package org.formula.context;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.formula.Resolvable;
+import org.formula.ResolvableList;
+import org.formula.ResolvedValue;
+
+/**
+ * A small {@link StaticDataContext} layered over a parent context, which is never copied or changed.
+ * <p>
+ * Keys set here hide the parent's value for the same key. Values read from the parent are resolved against the
+ * overlay, so a formula stored in the parent sees the overlay's keys, as long as the parent can hand out its
+ * unresolved values (every context in this package can). Other parents resolve their values themselves.
+ * <p>
+ * {@link #keys()} and {@link #search(String)} walk both layers without building their union.
+ */
+class OverlayDataContext extends StaticDataContext {
+    private final DataContext parent;
+
+    @Override
+    public ResolvedValue get(String key) {
+        Resolvable resolvable = resolvable(key);
+        if (resolvable != null) {
+            return resolvable.resolve(this);
+        }
+        return parent instanceof ResolvableSource ? ResolvedValue.none() : parent.get(key);
+    }
+
+    @Override
+    public Resolvable resolvable(String key) {
+        Resolvable local = super.resolvable(key);
+        if (local != null || !(parent instanceof ResolvableSource source)) {
+            return local;
+        }
+        return source.resolvable(key);
+    }
+
+    @Override
+    public Stream<String> keys() {
+        return Stream.concat(super.keys(), parent.keys().filter(key -> !containsKey(key)));
+    }
+
+    @Override
+    public Stream<ResolvedValue> search(String pattern) {
+        if (!pattern.contains("*")) {
+            return Stream.of(get(pattern));
+        }
+        return matchingKeys(pattern).stream()
+                .map(this::get);
+    }
+
+    /**
+     * Includes the parent's matching keys, so an overlay over another overlay sees every layer below it.
+     */
+    @Override
+    public List<String> matchingKeys(String pattern) {
+        return merge(super.matchingKeys(pattern), parentMatchingKeys(pattern));
+    }
+
+    @Override
+    public MutableDataContext push(String key, Resolvable value) {
+        if (containsKey(key)) {
+            return super.push(key, value);
+        }
+        Resolvable inherited = inherited(key);
+        if (inherited == null) {
+            return super.push(key, value);
+        } else if (inherited instanceof ResolvableList resolvableList) {
+            return set(key, resolvableList.with(value));
+        }
+        return set(key, new ResolvableList().add(inherited).add(value));
+    }
+
+    /**
+     * Returns the parent's value for {@code key}, unresolved if the parent can hand it out and resolved otherwise.
+     */
+    private Resolvable inherited(String key) {
+        if (parent instanceof ResolvableSource source) {
+            return source.resolvable(key);
+        }
+        ResolvedValue value = parent.get(key);
+        return value.hasValue() ? Resolvable.just(value) : null;
+    }
+
+    private List<String> parentMatchingKeys(String pattern) {
+        if (parent instanceof ResolvableSource source) {
+            return source.matchingKeys(pattern);
+        }
+        // a context from outside this package can only be scanned
+        WildcardPattern wildcard = WildcardPattern.of(pattern);
+        return parent.keys()
+                .filter(wildcard::matches)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Merges two sorted key lists, keeping a single copy of keys found in both.
+     */
+    private static List<String> merge(List<String> local, List<String> inherited) {
+        if (inherited.isEmpty()) {
+            return local;
+        }
+        if (local.isEmpty()) {
+            return inherited;
+        }
+        List<String> merged = new ArrayList<>(local.size() + inherited.size());
+        Iterator<String> a = local.iterator();
+        Iterator<String> b = inherited.iterator();
+        String nextA = a.next();
+        String nextB = b.next();
+        while (nextA != null || nextB != null) {
+            int order = nextA == null ? 1 : nextB == null ? -1 : nextA.compareTo(nextB);
+            if (order <= 0) {
+                merged.add(nextA);
+                nextA = a.hasNext() ? a.next() : null;
+                if (order == 0) {
+                    nextB = b.hasNext() ? b.next() : null;
+                }
+            } else {
+                merged.add(nextB);
+                nextB = b.hasNext() ? b.next() : null;
+            }
+        }
+        return merged;
+    }
+
+    OverlayDataContext(DataContext parent) {
+        this.parent = parent;
+    }
+}
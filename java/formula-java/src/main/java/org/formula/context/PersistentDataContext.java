@@ -0,0 +1,256 @@
+package org.formula.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.formula.Resolvable;
+import org.formula.ResolvableList;
+import org.formula.ResolvedValue;
+
+/**
+ * An immutable {@link DataContext}. {@link #with(String, Resolvable)} returns a new context that shares everything
+ * but the changed path with this one, so forking a large base context for a few overrides costs O(log n) time and
+ * memory rather than a copy of every key.
+ */
+public final class PersistentDataContext implements DataContext, ResolvableSource {
+    private static final PersistentDataContext EMPTY = new PersistentDataContext(HashTrie.empty());
+
+    private final HashTrie<Resolvable> data;
+    private volatile String[] sortedKeys;
+
+    public static PersistentDataContext empty() {
+        return EMPTY;
+    }
+
+    public static PersistentDataContext of(Map<String, Resolvable> data) {
+        HashTrie<Resolvable> trie = HashTrie.empty();
+        for (Map.Entry<String, Resolvable> entry : data.entrySet()) {
+            trie = trie.put(entry.getKey(), entry.getValue());
+        }
+        return new PersistentDataContext(trie);
+    }
+
+    public static Builder builder() {
+        return EMPTY.toBuilder();
+    }
+
+    @Override
+    public ResolvedValue get(String key) {
+        Resolvable resolvable = data.get(key);
+        if (resolvable == null) {
+            return ResolvedValue.none();
+        }
+        return resolvable.resolve(this);
+    }
+
+    @Override
+    public Stream<String> keys() {
+        List<String> keys = new ArrayList<>(data.size());
+        data.forEach((key, value) -> keys.add(key));
+        return keys.stream();
+    }
+
+    /**
+     * Wildcard searches return their values in key order, like the mutable contexts. The first one on a context
+     * sorts its keys, which takes O(n log n); later ones only scan the keys starting with the pattern's literal
+     * prefix. Contexts made by replacing the value of an existing key share the sorted keys.
+     */
+    @Override
+    public Stream<ResolvedValue> search(String pattern) {
+        if (!pattern.contains("*")) {
+            return Stream.of(get(pattern));
+        }
+        return matchingKeys(pattern).stream()
+                .map(this::get);
+    }
+
+    @Override
+    public List<String> matchingKeys(String pattern) {
+        WildcardPattern wildcard = WildcardPattern.of(pattern);
+        String[] sorted = sortedKeys();
+        int index = Arrays.binarySearch(sorted, wildcard.prefix());
+        List<String> keys = new ArrayList<>();
+        for (int i = index < 0 ? -index - 1 : index; i < sorted.length; i++) {
+            String key = sorted[i];
+            if (!key.startsWith(wildcard.prefix())) {
+                break;
+            }
+            if (wildcard.matches(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public Resolvable resolvable(String key) {
+        return data.get(key);
+    }
+
+    public PersistentDataContext with(String key, Resolvable value) {
+        return wrap(data.put(key, value));
+    }
+
+    public PersistentDataContext with(String key, ResolvedValue value) {
+        return with(key, Resolvable.just(value));
+    }
+
+    public PersistentDataContext with(String key, String value) {
+        return with(key, ResolvedValue.of(value));
+    }
+
+    public PersistentDataContext with(String key, int value) {
+        return with(key, ResolvedValue.of(value));
+    }
+
+    public PersistentDataContext with(String key, double value) {
+        return with(key, ResolvedValue.of(value));
+    }
+
+    public PersistentDataContext with(String key, boolean value) {
+        return with(key, ResolvedValue.of(value));
+    }
+
+    public PersistentDataContext without(String key) {
+        return wrap(data.remove(key));
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    @Override
+    public String toString() {
+        Map<String, Resolvable> sorted = new TreeMap<>();
+        data.forEach(sorted::put);
+        return sorted.toString();
+    }
+
+    private PersistentDataContext wrap(HashTrie<Resolvable> updated) {
+        if (updated == data) {
+            return this;
+        }
+        return new PersistentDataContext(updated, updated.size() == data.size() ? sortedKeys : null);
+    }
+
+    private String[] sortedKeys() {
+        String[] sorted = sortedKeys;
+        if (sorted == null) {
+            sorted = keys().sorted().toArray(String[]::new);
+            sortedKeys = sorted;
+        }
+        return sorted;
+    }
+
+    private PersistentDataContext(HashTrie<Resolvable> data) {
+        this(data, null);
+    }
+
+    private PersistentDataContext(HashTrie<Resolvable> data, String[] sortedKeys) {
+        this.data = data;
+        this.sortedKeys = sortedKeys;
+    }
+
+    /**
+     * A {@link MutableDataContext} over a {@link PersistentDataContext}. Each change replaces the current snapshot,
+     * and {@link #build()} returns it without copying.
+     */
+    public static final class Builder implements MutableDataContext {
+        private PersistentDataContext current;
+
+        @Override
+        public ResolvedValue get(String key) {
+            return current.get(key);
+        }
+
+        @Override
+        public Stream<String> keys() {
+            return current.keys();
+        }
+
+        @Override
+        public Stream<ResolvedValue> search(String pattern) {
+            return current.search(pattern);
+        }
+
+        @Override
+        public Builder set(String key, Resolvable value) {
+            current = current.with(key, value);
+            return this;
+        }
+
+        /**
+         * The snapshot is replaced once, after every key has been added to it.
+         */
+        @Override
+        public Builder setAll(Map<String, ? extends Resolvable> values) {
+            PersistentDataContext next = current;
+            for (Map.Entry<String, ? extends Resolvable> entry : values.entrySet()) {
+                next = next.with(entry.getKey(), entry.getValue());
+            }
+            current = next;
+            return this;
+        }
+
+        @Override
+        public Builder set(String key, ResolvedValue value) {
+            return set(key, Resolvable.just(value));
+        }
+
+        @Override
+        public Builder set(String key, String value) {
+            return set(key, ResolvedValue.of(value));
+        }
+
+        @Override
+        public Builder set(String key, int value) {
+            return set(key, ResolvedValue.of(value));
+        }
+
+        @Override
+        public Builder set(String key, double value) {
+            return set(key, ResolvedValue.of(value));
+        }
+
+        @Override
+        public Builder set(String key, boolean value) {
+            return set(key, ResolvedValue.of(value));
+        }
+
+        @Override
+        public Builder push(String key, Resolvable value) {
+            Resolvable existing = current.data.get(key);
+            if (existing == null) {
+                return set(key, new ResolvableList().add(value));
+            } else if (existing instanceof ResolvableList resolvableList) {
+                return set(key, resolvableList.with(value));
+            }
+            return set(key, new ResolvableList().add(existing).add(value));
+        }
+
+        public Builder remove(String key) {
+            current = current.without(key);
+            return this;
+        }
+
+        public PersistentDataContext build() {
+            return current;
+        }
+
+        @Override
+        public String toString() {
+            return current.toString();
+        }
+
+        private Builder(PersistentDataContext current) {
+            this.current = current;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.formula.context;
+
+import java.util.List;
+import org.formula.Resolvable;
+
+/**
+ * A context that can hand out the unresolved value of a key, so an {@link OverlayDataContext} can resolve it against
+ * itself rather than against the context it came from.
+ */
+interface ResolvableSource {
+
+    /**
+     * Returns the value stored under {@code key}, or {@code null} if there is none.
+     */
+    Resolvable resolvable(String key);
+
+    /**
+     * Returns the keys matching a wildcard {@code pattern}, in key order.
+     */
+    List<String> matchingKeys(String pattern);
+}
@@ -1,15 +1,20 @@
 package org.formula.context;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.stream.Stream;
 import org.formula.Resolvable;
 import org.formula.ResolvableList;
 import org.formula.ResolvedValue;
 
-class StaticDataContext implements MutableDataContext {
+class StaticDataContext implements MutableDataContext, ResolvableSource {
 
     private final Map<String, Resolvable> data;
+    private final NavigableSet<String> sortedKeys;
 
     public static StaticDataContext of(Map<String, Resolvable> data) {
         return new StaticDataContext(new HashMap<>(data));
@@ -30,8 +35,30 @@ class StaticDataContext implements MutableDataContext {
         return data.keySet().stream();
     }
 
+    /**
+     * Wildcard searches only scan the keys starting with the pattern's literal prefix, and return their values in key
+     * order.
+     */
+    @Override
+    public Stream<ResolvedValue> search(String pattern) {
+        if (!pattern.contains("*")) {
+            return Stream.of(get(pattern));
+        }
+        return matchingKeys(pattern).stream()
+                .map(this::get);
+    }
+
     public StaticDataContext set(String key, Resolvable value) {
-        data.put(key, value);
+        if (data.put(key, value) == null) {
+            sortedKeys.add(key);
+        }
+        return this;
+    }
+
+    @Override
+    public StaticDataContext setAll(Map<String, ? extends Resolvable> values) {
+        data.putAll(values);
+        sortedKeys.addAll(values.keySet());
         return this;
     }
 
@@ -53,6 +80,34 @@ class StaticDataContext implements MutableDataContext {
         }
     }
 
+    @Override
+    public Resolvable resolvable(String key) {
+        return data.get(key);
+    }
+
+    @Override
+    public List<String> matchingKeys(String pattern) {
+        WildcardPattern wildcard = WildcardPattern.of(pattern);
+        List<String> keys = new ArrayList<>();
+        for (String key : sortedKeys.tailSet(wildcard.prefix(), true)) {
+            if (!key.startsWith(wildcard.prefix())) {
+                break;
+            }
+            if (wildcard.matches(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    void addKey(String key) {
+        sortedKeys.add(key);
+    }
+
+    boolean containsKey(String key) {
+        return data.containsKey(key);
+    }
+
     @Override
     public String toString() {
         return data.toString();
@@ -63,6 +118,11 @@ class StaticDataContext implements MutableDataContext {
     }
 
     StaticDataContext(Map<String, Resolvable> data) {
+        this(data, new TreeSet<>(data.keySet()));
+    }
+
+    StaticDataContext(Map<String, Resolvable> data, NavigableSet<String> sortedKeys) {
         this.data = data;
+        this.sortedKeys = sortedKeys;
     }
 }
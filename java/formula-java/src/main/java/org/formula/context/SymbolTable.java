@@ -0,0 +1,76 @@
+package org.formula.context;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives each key a dense integer id, in the order the keys are first seen. Formulas bound to a symbol table read
+ * their variables from an {@link IndexedDataContext} that shares it by id, without hashing the key.
+ * <p>
+ * Ids are never reused or removed, and a symbol table can be shared between threads.
+ */
+public final class SymbolTable {
+    public static final int NO_ID = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] keys = new String[16];
+    private volatile int size;
+
+    public static SymbolTable create() {
+        return new SymbolTable();
+    }
+
+    public static SymbolTable of(String... keys) {
+        SymbolTable symbols = new SymbolTable();
+        for (String key : keys) {
+            symbols.intern(key);
+        }
+        return symbols;
+    }
+
+    /**
+     * Returns the id of {@code key}, giving it the next one if it does not have one yet.
+     */
+    public int intern(String key) {
+        Integer id = ids.get(key);
+        return id != null ? id : add(key);
+    }
+
+    /**
+     * Returns the id of {@code key}, or {@link #NO_ID} if it does not have one.
+     */
+    public int id(String key) {
+        Integer id = ids.get(key);
+        return id != null ? id : NO_ID;
+    }
+
+    public String key(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No key with id " + id);
+        }
+        return keys[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private synchronized int add(String key) {
+        Integer existing = ids.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size;
+        if (id == keys.length) {
+            keys = Arrays.copyOf(keys, id * 2);
+        }
+        keys[id] = key;
+        size = id + 1;
+        ids.put(key, id);
+        return id;
+    }
+
+    private SymbolTable() {
+    }
+}
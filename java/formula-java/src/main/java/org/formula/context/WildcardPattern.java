@@ -0,0 +1,59 @@
+package org.formula.context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled {@code *} search pattern, along with the literal prefix every matching key must start with.
+ * Compiled patterns are cached, since the same few patterns are searched for over and over.
+ */
+final class WildcardPattern {
+    private static final int MAX_CACHED_PATTERNS = 1024;
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+    private static final Map<String, WildcardPattern> CACHE = new ConcurrentHashMap<>();
+
+    private final String prefix;
+    private final Predicate<String> predicate;
+
+    static WildcardPattern of(String pattern) {
+        WildcardPattern cached = CACHE.get(pattern);
+        if (cached != null) {
+            return cached;
+        }
+        if (CACHE.size() >= MAX_CACHED_PATTERNS) {
+            CACHE.clear();
+        }
+        return CACHE.computeIfAbsent(pattern, WildcardPattern::compile);
+    }
+
+    String prefix() {
+        return prefix;
+    }
+
+    boolean matches(String key) {
+        return predicate.test(key);
+    }
+
+    private static WildcardPattern compile(String pattern) {
+        int prefixLength = 0;
+        while (prefixLength < pattern.length()
+                && REGEX_METACHARACTERS.indexOf(pattern.charAt(prefixLength)) < 0) {
+            prefixLength++;
+        }
+        String prefix = pattern.substring(0, prefixLength);
+
+        if (prefixLength == pattern.length() - 1 && pattern.charAt(prefixLength) == '*') {
+            return new WildcardPattern(prefix, key -> key.startsWith(prefix));
+        }
+        Predicate<String> regex = Pattern.compile("^%s$".formatted(pattern.replaceAll("\\*", ".*")))
+                .asMatchPredicate();
+        return new WildcardPattern(prefix, regex);
+    }
+
+    private WildcardPattern(String prefix, Predicate<String> predicate) {
+        this.prefix = prefix;
+        this.predicate = predicate;
+    }
+}
@@ -31,6 +31,11 @@ public class FormattedResolvedValue extends ResolvedValue {
         return this.actual.asBoolean();
     }
 
+    @Override
+    public Object asObject() {
+        return this.actual.asObject();
+    }
+
     public String asFormatted() {
         return this.formatted;
     }
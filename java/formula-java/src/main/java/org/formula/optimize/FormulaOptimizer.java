@@ -5,11 +5,13 @@ import java.util.List;
 import java.util.stream.Collectors;
 import org.formula.NamedResolvedValue;
 import org.formula.QuotedTextResolvedValue;
+import org.formula.Resolvable;
 import org.formula.ResolvedValue;
 import org.formula.parse.shuntingyard.Associativity;
 import org.formula.parse.shuntingyard.OperatorFunction1;
 import org.formula.parse.shuntingyard.OperatorFunction2;
 import org.formula.parse.shuntingyard.OperatorFunction3;
+import org.formula.parse.shuntingyard.ShuntingYard;
 import org.formula.parse.shuntingyard.ShuntingYardParser;
 import org.formula.util.Lambda1;
 import org.formula.util.Lambda2;
@@ -45,8 +47,8 @@ public class FormulaOptimizer {
             .function("if", opFn3("if(%s,%s,%s)"::formatted))
             .function("concat", opFn2("concat(%s,%s)"::formatted))
             .function("ordinal", opFn1("ordinal(%s)"::formatted))
-            .function("any", AnyFunction::new)
-            .function("all", AllFunction::new)
+            .functionN("any", AnyFunction::new)
+            .functionN("all", AllFunction::new)
             .variable("@", (context, key) -> ResolvedValue.of("@%s".formatted(key)))
             .variable("@{", "}", (context, key) -> ResolvedValue.of("@{%s}".formatted(key)))
             .variable("min(@", ")", (context, key) -> ResolvedValue.of("min(@%s)".formatted(key)))
@@ -55,6 +57,19 @@ public class FormulaOptimizer {
             .comment("[", "]", (value, comment) -> NamedResolvedValue.of(value, comment.substring(1, comment.length() - 1), "[", "]"))
             ;
 
+    /**
+     * Returns an equivalent formula that is cheaper to resolve, keeping its original text. Formulas that were not
+     * parsed into a {@link ShuntingYard} are returned as they are.
+     *
+     * @see ShuntingYard#optimized()
+     */
+    public static Resolvable optimize(Resolvable resolvable) {
+        if (resolvable instanceof ShuntingYard shuntingYard) {
+            return shuntingYard.optimized();
+        }
+        return resolvable;
+    }
+
     public static String optimize(String formulaText) {
         var resolved = FormulaOptimizer.PARSER.parse(formulaText).resolve();
         if (resolved instanceof MathFunction mf) {
@@ -0,0 +1,32 @@
+package org.formula.parse.shuntingyard;
+
+/**
+ * The built-in unary arithmetic operators and functions. Evaluators that work on whole columns recognise these and
+ * run them as plain array loops.
+ */
+public enum ArithmeticFunction implements NumericOperatorFunction1 {
+    NEGATE {
+        @Override
+        public double executeAsDouble(double a1) {
+            return -a1;
+        }
+    },
+    ABS {
+        @Override
+        public double executeAsDouble(double a1) {
+            return Math.abs(a1);
+        }
+    },
+    FLOOR {
+        @Override
+        public double executeAsDouble(double a1) {
+            return Math.floor(a1);
+        }
+    },
+    CEIL {
+        @Override
+        public double executeAsDouble(double a1) {
+            return Math.ceil(a1);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.formula.parse.shuntingyard;
+
+import org.formula.ResolvedValue;
+
+/**
+ * The built-in binary arithmetic operators. Evaluators that work on whole columns recognise these and run them as
+ * plain array loops.
+ */
+public enum ArithmeticOperator implements NumericOperatorFunction2 {
+    ADD {
+        @Override
+        public double executeAsDouble(double a1, double a2) {
+            return a1 + a2;
+        }
+
+        @Override
+        public ResolvedValue execute(ResolvedValue a1, ResolvedValue a2) {
+            if (!a1.hasValue() && !a2.hasValue()) {
+                return ResolvedValue.ZERO;
+            }
+            return super.execute(a1, a2);
+        }
+    },
+    SUBTRACT {
+        @Override
+        public double executeAsDouble(double a1, double a2) {
+            return a1 - a2;
+        }
+    },
+    MULTIPLY {
+        @Override
+        public double executeAsDouble(double a1, double a2) {
+            return a1 * a2;
+        }
+    },
+    DIVIDE {
+        @Override
+        public double executeAsDouble(double a1, double a2) {
+            return a1 / a2;
+        }
+    },
+    POWER {
+        @Override
+        public double executeAsDouble(double a1, double a2) {
+            return Math.pow(a1, a2);
+        }
+    }
+}
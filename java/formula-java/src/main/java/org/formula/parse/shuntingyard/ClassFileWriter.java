@@ -0,0 +1,351 @@
+package org.formula.parse.shuntingyard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough of a class file writer to emit straight-line methods (no branches, so no stack map frames) for
+ * {@link FormulaCompiler}.
+ */
+class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int CLASS_FILE_MAJOR_VERSION = 61;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int constantCount = 1;
+
+    private final String className;
+    private final String superName;
+    private final List<String> interfaces = new ArrayList<>();
+    private final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+    private final DataOutputStream fields = new DataOutputStream(fieldBytes);
+    private int fieldCount = 0;
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(methodBytes);
+    private int methodCount = 0;
+
+    ClassFileWriter(String className, String superName) {
+        this.className = className;
+        this.superName = superName;
+    }
+
+    ClassFileWriter addInterface(String interfaceName) {
+        interfaces.add(interfaceName);
+        return this;
+    }
+
+    ClassFileWriter addField(int access, String name, String descriptor) {
+        try {
+            fields.writeShort(access);
+            fields.writeShort(utf8(name));
+            fields.writeShort(utf8(descriptor));
+            fields.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fieldCount++;
+        return this;
+    }
+
+    Code addMethod(int access, String name, String descriptor) {
+        return new Code(access, name, descriptor);
+    }
+
+    byte[] toByteArray() {
+        try {
+            int thisClass = classRef(className);
+            int superClass = classRef(superName);
+            int[] interfaceRefs = interfaces.stream().mapToInt(this::classRef).toArray();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_MAJOR_VERSION);
+            out.writeShort(constantCount);
+            constantPoolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaceRefs.length);
+            for (int interfaceRef : interfaceRefs) {
+                out.writeShort(interfaceRef);
+            }
+            out.writeShort(fieldCount);
+            fieldBytes.writeTo(out);
+            out.writeShort(methodCount);
+            methodBytes.writeTo(out);
+            out.writeShort(0);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    private int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    private int stringRef(String value) {
+        int utf8 = utf8(value);
+        return constant("S" + value, out -> {
+            out.writeByte(CONSTANT_STRING);
+            out.writeShort(utf8);
+        });
+    }
+
+    private int integerRef(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerRef = classRef(owner);
+        int nameRef = utf8(name);
+        int descriptorRef = utf8(descriptor);
+        int nameAndType = constant("N" + name + " " + descriptor, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameRef);
+            out.writeShort(descriptorRef);
+        });
+        return constant(tag + owner + "." + name + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerRef);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int constant(String key, ConstantWriter writer) {
+        Integer existing = constants.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            writer.write(constantPool);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int index = constantCount++;
+        constants.put(key, index);
+        return index;
+    }
+
+    private interface ConstantWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    class Code {
+        private static final int ALOAD = 0x19;
+        private static final int ASTORE = 0x3a;
+        private static final int WIDE = 0xc4;
+        private static final int LDC_W = 0x13;
+        private static final int AALOAD = 0x32;
+        private static final int POP = 0x57;
+        private static final int DUP = 0x59;
+        private static final int ARETURN = 0xb0;
+        private static final int RETURN = 0xb1;
+        private static final int GETSTATIC = 0xb2;
+        private static final int PUTSTATIC = 0xb3;
+        private static final int GETFIELD = 0xb4;
+        private static final int PUTFIELD = 0xb5;
+        private static final int INVOKEVIRTUAL = 0xb6;
+        private static final int INVOKESPECIAL = 0xb7;
+        private static final int INVOKESTATIC = 0xb8;
+        private static final int INVOKEINTERFACE = 0xb9;
+        private static final int NEW = 0xbb;
+        private static final int CHECKCAST = 0xc0;
+
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+        private final DataOutputStream code = new DataOutputStream(codeBytes);
+
+        private Code(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        Code aload(int local) {
+            return local(ALOAD, local);
+        }
+
+        Code astore(int local) {
+            return local(ASTORE, local);
+        }
+
+        Code ldc(String value) {
+            return u2(LDC_W, stringRef(value));
+        }
+
+        Code ldc(int value) {
+            return u2(LDC_W, integerRef(value));
+        }
+
+        Code ldcClass(String internalName) {
+            return u2(LDC_W, classRef(internalName));
+        }
+
+        Code aaload() {
+            return op(AALOAD);
+        }
+
+        Code pop() {
+            return op(POP);
+        }
+
+        Code dup() {
+            return op(DUP);
+        }
+
+        Code areturn() {
+            return op(ARETURN);
+        }
+
+        Code vreturn() {
+            return op(RETURN);
+        }
+
+        Code getstatic(String owner, String name, String descriptor) {
+            return u2(GETSTATIC, memberRef(CONSTANT_FIELDREF, owner, name, descriptor));
+        }
+
+        Code putstatic(String owner, String name, String descriptor) {
+            return u2(PUTSTATIC, memberRef(CONSTANT_FIELDREF, owner, name, descriptor));
+        }
+
+        Code getfield(String owner, String name, String descriptor) {
+            return u2(GETFIELD, memberRef(CONSTANT_FIELDREF, owner, name, descriptor));
+        }
+
+        Code putfield(String owner, String name, String descriptor) {
+            return u2(PUTFIELD, memberRef(CONSTANT_FIELDREF, owner, name, descriptor));
+        }
+
+        Code invokevirtual(String owner, String name, String descriptor) {
+            return u2(INVOKEVIRTUAL, memberRef(CONSTANT_METHODREF, owner, name, descriptor));
+        }
+
+        Code invokespecial(String owner, String name, String descriptor) {
+            return u2(INVOKESPECIAL, memberRef(CONSTANT_METHODREF, owner, name, descriptor));
+        }
+
+        Code invokestatic(String owner, String name, String descriptor) {
+            return u2(INVOKESTATIC, memberRef(CONSTANT_METHODREF, owner, name, descriptor));
+        }
+
+        Code invokeinterface(String owner, String name, String descriptor, int argumentCount) {
+            u2(INVOKEINTERFACE, memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor));
+            write(() -> {
+                code.writeByte(argumentCount + 1);
+                code.writeByte(0);
+            });
+            return this;
+        }
+
+        Code newInstance(String internalName) {
+            return u2(NEW, classRef(internalName));
+        }
+
+        Code checkcast(String internalName) {
+            return u2(CHECKCAST, classRef(internalName));
+        }
+
+        int size() {
+            return code.size();
+        }
+
+        void end(int maxStack, int maxLocals) {
+            try {
+                methods.writeShort(access);
+                methods.writeShort(utf8(name));
+                methods.writeShort(utf8(descriptor));
+                methods.writeShort(1);
+                methods.writeShort(utf8("Code"));
+                methods.writeInt(12 + code.size());
+                methods.writeShort(maxStack);
+                methods.writeShort(maxLocals);
+                methods.writeInt(code.size());
+                codeBytes.writeTo(methods);
+                methods.writeShort(0);
+                methods.writeShort(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            methodCount++;
+        }
+
+        private Code local(int opcode, int local) {
+            return write(() -> {
+                if (local > 0xFF) {
+                    code.writeByte(WIDE);
+                    code.writeByte(opcode);
+                    code.writeShort(local);
+                } else {
+                    code.writeByte(opcode);
+                    code.writeByte(local);
+                }
+            });
+        }
+
+        private Code op(int opcode) {
+            return write(() -> code.writeByte(opcode));
+        }
+
+        private Code u2(int opcode, int operand) {
+            return write(() -> {
+                code.writeByte(opcode);
+                code.writeShort(operand);
+            });
+        }
+
+        private Code write(CodeWriter writer) {
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+    }
+
+    private interface CodeWriter {
+        void write() throws IOException;
+    }
+}
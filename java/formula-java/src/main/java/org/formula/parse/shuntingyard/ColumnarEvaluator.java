@@ -0,0 +1,247 @@
+package org.formula.parse.shuntingyard;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+
+/**
+ * Evaluates a purely numeric formula over whole columns of values at once, instead of one {@link ResolvedValue} at
+ * a time.
+ * <p>
+ * Each variable is bound by name to a {@code double[]}, {@code int[]} or {@code boolean[]} column (booleans count as
+ * {@code 1} and {@code 0}, as they do when resolved). Every instruction of the formula then runs as a loop over a
+ * block of rows. The built-in {@link ArithmeticOperator}, {@link ArithmeticFunction} and {@link ComparisonOperator}
+ * kernels are plain array loops the JIT can vectorize, and any other numeric kernel is called once per row.
+ * Comparisons produce {@code 1} or {@code 0}.
+ */
+public final class ColumnarEvaluator {
+    private static final int BLOCK_SIZE = 1024;
+
+    private final Program program;
+    private final Set<String> columns;
+
+    /**
+     * @throws IllegalArgumentException if the formula uses anything but numbers, plain variables and numeric
+     * operators or functions
+     */
+    public static ColumnarEvaluator compile(Resolvable resolvable) {
+        if (!(resolvable instanceof ShuntingYard shuntingYard)) {
+            throw new IllegalArgumentException("Cannot evaluate over columns: " + resolvable.asFormula());
+        }
+        Program program = shuntingYard.program();
+        int size = program.size();
+        boolean numeric = size == 1 || size > 1 && program.regionEnd(0, size) == size - 1;
+        Set<String> columns = new LinkedHashSet<>();
+        for (int pc = 0; numeric && pc < size; pc++) {
+            switch (program.opcode(pc)) {
+                case Program.PUSH -> numeric = isNumber(program.operand(pc));
+                case Program.VARIABLE -> {
+                    String name = ((Variable) program.operand(pc)).name();
+                    numeric = !name.contains("*");
+                    columns.add(name);
+                }
+                case Program.CALL1, Program.CALL2 -> numeric = program.kernel(pc) != null;
+                default -> numeric = false;
+            }
+        }
+        if (!numeric) {
+            throw new IllegalArgumentException("Cannot evaluate over columns: " + shuntingYard.asFormula());
+        }
+        return new ColumnarEvaluator(program, Collections.unmodifiableSet(columns));
+    }
+
+    /**
+     * The variable names that need a column.
+     */
+    public Set<String> columns() {
+        return columns;
+    }
+
+    public double[] evaluate(int rows, Map<String, ?> columns) {
+        double[] result = new double[rows];
+        evaluate(rows, columns, result);
+        return result;
+    }
+
+    public void evaluate(int rows, Map<String, ?> columns, double[] result) {
+        Object[] bound = new Object[program.size()];
+        for (int pc = 0; pc < program.size(); pc++) {
+            if (program.opcode(pc) == Program.VARIABLE) {
+                bound[pc] = column(((Variable) program.operand(pc)).name(), columns, rows);
+            }
+        }
+        if (result.length < rows) {
+            throw new IllegalArgumentException("Result column has " + result.length + " rows, expected " + rows);
+        }
+
+        double[][] stack = new double[program.maxDepth()][Math.min(rows, BLOCK_SIZE)];
+        for (int start = 0; start < rows; start += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, rows - start);
+            int sp = 0;
+            for (int pc = 0; pc < program.size(); pc++) {
+                switch (program.opcode(pc)) {
+                    case Program.PUSH -> Arrays.fill(stack[sp++], 0, length, program.number(pc));
+                    case Program.VARIABLE -> load(bound[pc], start, length, stack[sp++]);
+                    case Program.CALL1 -> apply(program.kernel(pc), stack[sp - 1], length);
+                    case Program.CALL2 -> {
+                        sp--;
+                        apply(program.kernel(pc), stack[sp - 1], stack[sp], length);
+                    }
+                    default -> throw new IllegalStateException("Unexpected opcode: " + program.opcode(pc));
+                }
+            }
+            System.arraycopy(stack[0], 0, result, start, length);
+        }
+    }
+
+    private static Object column(String name, Map<String, ?> columns, int rows) {
+        Object column = columns.get(name);
+        int length;
+        if (column == null) {
+            throw new IllegalArgumentException("No column for '" + name + "'");
+        } else if (column instanceof double[] values) {
+            length = values.length;
+        } else if (column instanceof int[] values) {
+            length = values.length;
+        } else if (column instanceof boolean[] values) {
+            length = values.length;
+        } else {
+            throw new IllegalArgumentException(
+                    "Column '" + name + "' must be a double[], int[] or boolean[], not " + column.getClass().getName());
+        }
+        if (length < rows) {
+            throw new IllegalArgumentException("Column '" + name + "' has " + length + " rows, expected " + rows);
+        }
+        return column;
+    }
+
+    private static void load(Object column, int start, int length, double[] target) {
+        if (column instanceof double[] values) {
+            System.arraycopy(values, start, target, 0, length);
+        } else if (column instanceof int[] values) {
+            for (int i = 0; i < length; i++) {
+                target[i] = values[start + i];
+            }
+        } else {
+            boolean[] values = (boolean[]) column;
+            for (int i = 0; i < length; i++) {
+                target[i] = values[start + i] ? 1.0 : 0.0;
+            }
+        }
+    }
+
+    private static void apply(Object kernel, double[] a, int length) {
+        if (kernel instanceof ArithmeticFunction function) {
+            switch (function) {
+                case NEGATE -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] = -a[i];
+                    }
+                }
+                case ABS -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] = Math.abs(a[i]);
+                    }
+                }
+                case FLOOR -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] = Math.floor(a[i]);
+                    }
+                }
+                case CEIL -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] = Math.ceil(a[i]);
+                    }
+                }
+            }
+            return;
+        }
+        NumericOperatorFunction1 fn = (NumericOperatorFunction1) kernel;
+        for (int i = 0; i < length; i++) {
+            a[i] = fn.executeAsDouble(a[i]);
+        }
+    }
+
+    private static void apply(Object kernel, double[] a, double[] b, int length) {
+        if (kernel instanceof ArithmeticOperator operator) {
+            switch (operator) {
+                case ADD -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] += b[i];
+                    }
+                }
+                case SUBTRACT -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] -= b[i];
+                    }
+                }
+                case MULTIPLY -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] *= b[i];
+                    }
+                }
+                case DIVIDE -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] /= b[i];
+                    }
+                }
+                case POWER -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] = Math.pow(a[i], b[i]);
+                    }
+                }
+            }
+            return;
+        }
+        if (kernel instanceof ComparisonOperator operator) {
+            switch (operator) {
+                case LESS -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] = a[i] < b[i] ? 1.0 : 0.0;
+                    }
+                }
+                case LESS_OR_EQUAL -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] = a[i] <= b[i] ? 1.0 : 0.0;
+                    }
+                }
+                case GREATER -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] = a[i] > b[i] ? 1.0 : 0.0;
+                    }
+                }
+                case GREATER_OR_EQUAL -> {
+                    for (int i = 0; i < length; i++) {
+                        a[i] = a[i] >= b[i] ? 1.0 : 0.0;
+                    }
+                }
+            }
+            return;
+        }
+        NumericOperatorFunction2 fn = (NumericOperatorFunction2) kernel;
+        for (int i = 0; i < length; i++) {
+            a[i] = fn.executeAsDouble(a[i], b[i]);
+        }
+    }
+
+    private static boolean isNumber(Object operand) {
+        if (!(operand instanceof ResolvedValue value) || !value.hasValue()) {
+            return false;
+        }
+        try {
+            value.asDecimal();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private ColumnarEvaluator(Program program, Set<String> columns) {
+        this.program = program;
+        this.columns = columns;
+    }
+}
@@ -0,0 +1,32 @@
+package org.formula.parse.shuntingyard;
+
+/**
+ * The built-in numeric comparisons. Evaluators that work on whole columns recognise these and run them as plain
+ * array loops.
+ */
+public enum ComparisonOperator implements ComparisonOperatorFunction2 {
+    LESS {
+        @Override
+        public boolean test(double a1, double a2) {
+            return a1 < a2;
+        }
+    },
+    LESS_OR_EQUAL {
+        @Override
+        public boolean test(double a1, double a2) {
+            return a1 <= a2;
+        }
+    },
+    GREATER {
+        @Override
+        public boolean test(double a1, double a2) {
+            return a1 > a2;
+        }
+    },
+    GREATER_OR_EQUAL {
+        @Override
+        public boolean test(double a1, double a2) {
+            return a1 >= a2;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.formula.parse.shuntingyard;
+
+import org.formula.ResolvedValue;
+
+/**
+ * Compares two numbers. Inside a numeric subexpression the result is carried as {@code 1} or {@code 0}, the same
+ * values {@link ResolvedValue#TRUE} and {@link ResolvedValue#FALSE} convert to.
+ */
+public interface ComparisonOperatorFunction2 extends NumericOperatorFunction2 {
+
+    boolean test(double a1, double a2);
+
+    @Override
+    default double executeAsDouble(double a1, double a2) {
+        return test(a1, a2) ? 1.0 : 0.0;
+    }
+
+    @Override
+    default ResolvedValue execute(ResolvedValue a1, ResolvedValue a2) {
+        return ResolvedValue.of(test(a1.asDecimal(), a2.asDecimal()));
+    }
+}
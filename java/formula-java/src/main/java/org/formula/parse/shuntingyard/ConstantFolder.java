@@ -0,0 +1,238 @@
+package org.formula.parse.shuntingyard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.formula.util.Lambda0;
+
+/**
+ * Evaluates the parts of a shunting-yard output buffer that do not depend on any variable, replacing each of them
+ * with a single {@link Term}.
+ * <p>
+ * Only calls to pure operators and functions are folded: those named in the parser's pure set, numeric kernels, the
+ * built-in {@link LogicOperator}s and {@link LogicFunction}s, and comments. A lazy call is also folded when it only
+ * needs its constant operands, and reduced to one of its operands when that is what it returns, so
+ * {@code if(true; @a; @b)} becomes {@code @a}. A call that fails is left in place, so it fails when the formula is
+ * resolved, as it would have without folding.
+ */
+final class ConstantFolder {
+    static final int UNKNOWN_ARITY = -1;
+
+    private final Set<String> pure;
+
+    static List<Object> fold(List<Object> nodes, Set<String> pure) {
+        return new ConstantFolder(pure).fold(nodes);
+    }
+
+    private List<Object> fold(List<Object> nodes) {
+        List<Subtree> stack = new ArrayList<>();
+        boolean folded = false;
+        int pendingArity = UNKNOWN_ARITY;
+        for (Object node : nodes) {
+            if (node instanceof Arity arity) {
+                pendingArity = arity.arity();
+                continue;
+            }
+            int consumed = consumed(node, pendingArity);
+            if (consumed > stack.size()) {
+                return nodes;
+            }
+            List<Subtree> operands = new ArrayList<>(stack.subList(stack.size() - consumed, stack.size()));
+            stack.subList(stack.size() - consumed, stack.size()).clear();
+
+            Subtree result = !(node instanceof OperatorFunctionN) || pendingArity != UNKNOWN_ARITY
+                    ? call(node, operands)
+                    : null;
+            if (result != null) {
+                folded = true;
+            } else if (node instanceof Term term) {
+                result = new Subtree(List.of(term), term.resolve(DataContext.EMPTY));
+            } else {
+                List<Object> subtree = new ArrayList<>();
+                operands.forEach(operand -> subtree.addAll(operand.nodes()));
+                if (node instanceof OperatorFunctionN && pendingArity != UNKNOWN_ARITY) {
+                    subtree.add(new Arity(pendingArity));
+                }
+                subtree.add(node);
+                result = new Subtree(subtree, null);
+            }
+            if (node instanceof OperatorFunctionN) {
+                pendingArity = UNKNOWN_ARITY;
+            }
+            stack.add(result);
+        }
+        return folded && stack.size() == 1 ? stack.get(0).nodes() : nodes;
+    }
+
+    /**
+     * Returns what the call reduces to, or null if it has to be evaluated every time the formula is resolved.
+     */
+    private Subtree call(Object node, List<Subtree> operands) {
+        if (!isPure(node, pure)) {
+            return null;
+        }
+        Placeholder[] placeholders = new Placeholder[operands.size()];
+        ResolvedValue[] values = new ResolvedValue[operands.size()];
+        boolean constant = true;
+        for (int i = 0; i < operands.size(); i++) {
+            values[i] = operands.get(i).value();
+            if (values[i] == null) {
+                placeholders[i] = new Placeholder();
+                constant = false;
+            }
+        }
+        if (!constant && !(node instanceof LazyOperatorFunction2 || node instanceof LazyOperatorFunction3)) {
+            return null;
+        }
+
+        boolean[] forced = new boolean[operands.size()];
+        ResolvedValue result;
+        try {
+            result = execute(node, values, placeholders, forced);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        for (int i = 0; i < placeholders.length; i++) {
+            if (placeholders[i] != null && result == placeholders[i]) {
+                return operands.get(i);
+            }
+        }
+        for (int i = 0; i < placeholders.length; i++) {
+            if (placeholders[i] != null && forced[i]) {
+                return null;
+            }
+        }
+        return result == null ? null : new Subtree(List.of(Term.of(result)), result);
+    }
+
+    private static ResolvedValue execute(Object node, ResolvedValue[] values, Placeholder[] placeholders,
+            boolean[] forced) {
+        if (node instanceof OperatorFunction0 fn) {
+            return fn.execute();
+        } else if (node instanceof OperatorFunction1 fn) {
+            return fn.execute(values[0]);
+        } else if (node instanceof OperatorFunction2 fn) {
+            return fn.execute(values[0], values[1]);
+        } else if (node instanceof OperatorFunction3 fn) {
+            return fn.execute(values[0], values[1], values[2]);
+        } else if (node instanceof OperatorFunctionN fn) {
+            return fn.execute(List.of(values));
+        } else if (node instanceof Comment comment) {
+            return comment.fn().execute(values[0], comment.text());
+        } else if (node instanceof LazyOperatorFunction2 fn) {
+            return fn.execute(thunk(0, values, placeholders, forced), thunk(1, values, placeholders, forced));
+        } else if (node instanceof LazyOperatorFunction3 fn) {
+            return fn.execute(thunk(0, values, placeholders, forced), thunk(1, values, placeholders, forced),
+                    thunk(2, values, placeholders, forced));
+        }
+        throw new IllegalStateException("Not a call: " + node);
+    }
+
+    private static Lambda0<ResolvedValue> thunk(int index, ResolvedValue[] values, Placeholder[] placeholders,
+            boolean[] forced) {
+        return () -> {
+            forced[index] = true;
+            return values[index] != null ? values[index] : placeholders[index];
+        };
+    }
+
+    static boolean isPure(Object node, Set<String> pure) {
+        if (node instanceof Comment comment) {
+            return pure.stream().anyMatch(comment.text()::startsWith);
+        }
+        Object fn = node;
+        if (node instanceof Operator1 operator) fn = operator.fn();
+        if (node instanceof Operator2 operator) fn = operator.fn();
+        if (node instanceof Function1 func) fn = func.fn();
+        if (node instanceof Function2 func) fn = func.fn();
+        if (node instanceof LazyOperator2 operator) fn = operator.fn();
+        if (fn instanceof NumericOperatorFunction1 || fn instanceof NumericOperatorFunction2
+                || fn instanceof LogicFunction || fn instanceof LogicOperator) {
+            return true;
+        }
+        return node instanceof Named named && pure.contains(named.name());
+    }
+
+    static int consumed(Object node, int pendingArity) {
+        if (node instanceof OperatorFunction0) {
+            return 0;
+        } else if (node instanceof OperatorFunction1 || node instanceof Comment) {
+            return 1;
+        } else if (node instanceof OperatorFunction2 || node instanceof LazyOperatorFunction2) {
+            return 2;
+        } else if (node instanceof OperatorFunction3 || node instanceof LazyOperatorFunction3) {
+            return 3;
+        } else if (node instanceof OperatorFunctionN) {
+            return Math.max(pendingArity, 0);
+        }
+        return 0;
+    }
+
+    private record Subtree(List<Object> nodes, ResolvedValue value) {
+    }
+
+    /**
+     * Stands in for an operand that is not constant. Using it in any way stops the call from being folded.
+     */
+    private static final class Placeholder extends ResolvedValue {
+
+        @Override
+        public String asText() {
+            throw new NotConstant();
+        }
+
+        @Override
+        public int asNumber() {
+            throw new NotConstant();
+        }
+
+        @Override
+        public double asDecimal() {
+            throw new NotConstant();
+        }
+
+        @Override
+        public boolean asBoolean() {
+            throw new NotConstant();
+        }
+
+        @Override
+        public List<ResolvedValue> asList() {
+            throw new NotConstant();
+        }
+
+        @Override
+        public boolean hasValue() {
+            throw new NotConstant();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            throw new NotConstant();
+        }
+
+        @Override
+        public int hashCode() {
+            throw new NotConstant();
+        }
+
+        @Override
+        public String toString() {
+            throw new NotConstant();
+        }
+    }
+
+    private static final class NotConstant extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotConstant() {
+            super(null, null, false, false);
+        }
+    }
+
+    private ConstantFolder(Set<String> pure) {
+        this.pure = pure;
+    }
+}
@@ -0,0 +1,426 @@
+package org.formula.parse.shuntingyard;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.formula.NamedResolvedValue;
+import org.formula.QuotedTextResolvedValue;
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+import org.formula.util.Lambda2;
+
+/**
+ * A file of parsed formulas stored by key, in a binary form that is read back without parsing them again.
+ * <p>
+ * The file holds a table of strings, a table of constants, an index of the keys in sorted order, and the output
+ * buffer of each formula as a list of tagged nodes that refer to those tables. Operators, functions, variables and
+ * comments are stored by the name they were registered under, and are looked up in the parser the catalog is opened
+ * with, which has to define them the same way as the one that parsed the formulas.
+ * <p>
+ * {@link #open(Path, ShuntingYardParser)} maps the file and only reads its header. Strings, constants and formulas are
+ * decoded the first time they are needed, and each formula is decoded at most once.
+ */
+public final class FormulaCatalog {
+    static final int MAGIC = 0x464D4C43;
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 9 * Integer.BYTES;
+    private static final int NONE = -1;
+
+    private static final byte TERM = 0;
+    private static final byte VARIABLE = 1;
+    private static final byte CALL = 2;
+    private static final byte ARITY = 3;
+    private static final byte COMMENT = 4;
+    private static final byte LITERAL = 5;
+
+    private static final byte NULL_VALUE = 0;
+    private static final byte INT_VALUE = 1;
+    private static final byte DECIMAL_VALUE = 2;
+    private static final byte TRUE_VALUE = 3;
+    private static final byte FALSE_VALUE = 4;
+    private static final byte TEXT_VALUE = 5;
+    private static final byte LIST_VALUE = 6;
+    private static final byte QUOTED_VALUE = 7;
+    private static final byte NAMED_VALUE = 8;
+
+    private final ByteBuffer buffer;
+    private final ShuntingYardParser parser;
+    private final int size;
+    private final int strings;
+    private final int constants;
+    private final int index;
+    private final int code;
+    private final String[] decodedStrings;
+    private final ResolvedValue[] decodedConstants;
+    private final AtomicReferenceArray<Resolvable> decodedFormulas;
+
+    /**
+     * Writes {@code formulas}, which must have been parsed by {@code parser}, to a new catalog at {@code path}.
+     */
+    public static void write(Path path, Map<String, ? extends Resolvable> formulas, ShuntingYardParser parser)
+            throws IOException {
+        new Writer(parser).write(path, new TreeMap<>(formulas));
+    }
+
+    public static FormulaCatalog open(Path path, ShuntingYardParser parser) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a formula catalog: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported formula catalog version " + buffer.getInt(4) + ": " + path);
+        }
+        return new FormulaCatalog(buffer, parser);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Stream<String> keys() {
+        return IntStream.range(0, size).mapToObj(this::key);
+    }
+
+    /**
+     * Returns the formula stored under {@code key}, or null if there is none.
+     */
+    public Resolvable get(String key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = key(middle).compareTo(key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return formula(middle);
+            }
+        }
+        return null;
+    }
+
+    private String key(int entry) {
+        return string(buffer.getInt(index + entry * 2 * Integer.BYTES));
+    }
+
+    private Resolvable formula(int entry) {
+        Resolvable formula = decodedFormulas.get(entry);
+        if (formula == null) {
+            formula = decodeFormula(code + buffer.getInt(index + entry * 2 * Integer.BYTES + Integer.BYTES));
+            if (!decodedFormulas.compareAndSet(entry, null, formula)) {
+                formula = decodedFormulas.get(entry);
+            }
+        }
+        return formula;
+    }
+
+    private Resolvable decodeFormula(int position) {
+        String text = string(buffer.getInt(position));
+        if (text == null) {
+            return Resolvable.empty();
+        }
+        int count = buffer.getInt(position + Integer.BYTES);
+        position += 2 * Integer.BYTES;
+        List<Object> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte tag = buffer.get(position++);
+            switch (tag) {
+                case TERM -> {
+                    int value = buffer.getInt(position);
+                    nodes.add(new Term(value == NONE ? null : constant(value),
+                            string(buffer.getInt(position + Integer.BYTES)),
+                            string(buffer.getInt(position + 2 * Integer.BYTES))));
+                    position += 3 * Integer.BYTES;
+                }
+                case VARIABLE -> {
+                    VariableResolver resolver = (VariableResolver) definition(buffer.getInt(position));
+                    nodes.add(new Variable(string(buffer.getInt(position + Integer.BYTES)),
+                            string(buffer.getInt(position + 2 * Integer.BYTES)), resolver));
+                    position += 3 * Integer.BYTES;
+                }
+                case CALL -> {
+                    nodes.add(definition(buffer.getInt(position)));
+                    position += Integer.BYTES;
+                }
+                case ARITY -> {
+                    nodes.add(new Arity(buffer.getInt(position)));
+                    position += Integer.BYTES;
+                }
+                case COMMENT -> {
+                    @SuppressWarnings("unchecked")
+                    var fn = (Lambda2<ResolvedValue, String, ResolvedValue>) definition(buffer.getInt(position));
+                    nodes.add(Comment.of(string(buffer.getInt(position + Integer.BYTES)), fn));
+                    position += 2 * Integer.BYTES;
+                }
+                case LITERAL -> {
+                    nodes.add(Literal.of(string(buffer.getInt(position))));
+                    position += Integer.BYTES;
+                }
+                default -> throw new IllegalStateException("Unknown node tag " + tag + " in formula \"" + text + "\"");
+            }
+        }
+        return new ShuntingYard(nodes, text, parser.pure());
+    }
+
+    private Object definition(int id) {
+        String name = string(id);
+        Object definition = parser.definition(name);
+        if (definition == null) {
+            throw new IllegalStateException("The parser does not define \"" + name.replace('\0', ' ').trim() + "\"");
+        }
+        return definition;
+    }
+
+    private String string(int id) {
+        if (id == NONE) {
+            return null;
+        }
+        String string = decodedStrings[id];
+        if (string == null) {
+            int start = buffer.getInt(strings + id * Integer.BYTES);
+            int end = buffer.getInt(strings + (id + 1) * Integer.BYTES);
+            byte[] bytes = new byte[end - start];
+            buffer.get(strings + (decodedStrings.length + 1) * Integer.BYTES + start, bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            decodedStrings[id] = string;
+        }
+        return string;
+    }
+
+    private ResolvedValue constant(int id) {
+        ResolvedValue value = decodedConstants[id];
+        if (value == null) {
+            int position = constants + (decodedConstants.length + 1) * Integer.BYTES
+                    + buffer.getInt(constants + id * Integer.BYTES);
+            byte type = buffer.get(position++);
+            value = switch (type) {
+                case NULL_VALUE -> ResolvedValue.none();
+                case INT_VALUE -> ResolvedValue.of(buffer.getInt(position));
+                case DECIMAL_VALUE -> ResolvedValue.of(buffer.getDouble(position));
+                case TRUE_VALUE -> ResolvedValue.TRUE;
+                case FALSE_VALUE -> ResolvedValue.FALSE;
+                case TEXT_VALUE -> ResolvedValue.of(string(buffer.getInt(position)));
+                case LIST_VALUE -> {
+                    List<ResolvedValue> values = new ArrayList<>();
+                    int count = buffer.getInt(position);
+                    for (int i = 1; i <= count; i++) {
+                        values.add(constant(buffer.getInt(position + i * Integer.BYTES)));
+                    }
+                    yield ResolvedValue.of(values);
+                }
+                case QUOTED_VALUE -> QuotedTextResolvedValue.of(constant(buffer.getInt(position)),
+                        string(buffer.getInt(position + Integer.BYTES)),
+                        string(buffer.getInt(position + 2 * Integer.BYTES)));
+                case NAMED_VALUE -> NamedResolvedValue.of(constant(buffer.getInt(position)),
+                        string(buffer.getInt(position + Integer.BYTES)),
+                        string(buffer.getInt(position + 2 * Integer.BYTES)),
+                        string(buffer.getInt(position + 3 * Integer.BYTES)));
+                default -> throw new IllegalStateException("Unknown constant type " + type);
+            };
+            decodedConstants[id] = value;
+        }
+        return value;
+    }
+
+    private FormulaCatalog(ByteBuffer buffer, ShuntingYardParser parser) {
+        this.buffer = buffer;
+        this.parser = parser;
+        this.decodedStrings = new String[buffer.getInt(8)];
+        this.decodedConstants = new ResolvedValue[buffer.getInt(12)];
+        this.size = buffer.getInt(16);
+        this.strings = buffer.getInt(20);
+        this.constants = buffer.getInt(24);
+        this.index = buffer.getInt(28);
+        this.code = buffer.getInt(32);
+        this.decodedFormulas = new AtomicReferenceArray<>(size);
+    }
+
+    private static final class Writer {
+        private final ShuntingYardParser parser;
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final Map<ByteBuffer, Integer> constants = new HashMap<>();
+        private final List<byte[]> constantBytes = new ArrayList<>();
+
+        void write(Path path, Map<String, ? extends Resolvable> formulas) throws IOException {
+            int[] keys = new int[formulas.size()];
+            int[] offsets = new int[formulas.size()];
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(code);
+            int entry = 0;
+            for (Map.Entry<String, ? extends Resolvable> formula : formulas.entrySet()) {
+                keys[entry] = string(formula.getKey());
+                offsets[entry++] = out.size();
+                if (formula.getValue() instanceof ShuntingYard shuntingYard) {
+                    writeFormula(out, shuntingYard);
+                } else if (formula.getValue() == Resolvable.empty()) {
+                    out.writeInt(NONE);
+                    out.writeInt(0);
+                } else {
+                    throw new IllegalArgumentException("Formula \"" + formula.getKey() + "\" was not parsed by a "
+                            + ShuntingYardParser.class.getSimpleName());
+                }
+            }
+
+            byte[][] stringBytes = strings.keySet().stream()
+                    .map(string -> string.getBytes(StandardCharsets.UTF_8))
+                    .toArray(byte[][]::new);
+            int stringsOffset = HEADER_SIZE;
+            int constantsOffset = stringsOffset + tableSize(stringBytes);
+            int indexOffset = constantsOffset + tableSize(constantBytes.toArray(byte[][]::new));
+            int codeOffset = indexOffset + keys.length * 2 * Integer.BYTES;
+
+            try (DataOutputStream file = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+                for (int value : new int[] {MAGIC, VERSION, stringBytes.length, constantBytes.size(), keys.length,
+                        stringsOffset, constantsOffset, indexOffset, codeOffset}) {
+                    file.writeInt(value);
+                }
+                writeTable(file, List.of(stringBytes));
+                writeTable(file, constantBytes);
+                for (int i = 0; i < keys.length; i++) {
+                    file.writeInt(keys[i]);
+                    file.writeInt(offsets[i]);
+                }
+                code.writeTo(file);
+            }
+        }
+
+        private void writeFormula(DataOutputStream out, ShuntingYard formula) throws IOException {
+            out.writeInt(string(formula.asFormula()));
+            out.writeInt(formula.stack().size());
+            for (Object node : formula.stack()) {
+                if (node instanceof Term term) {
+                    out.writeByte(TERM);
+                    out.writeInt(term.value() == null ? NONE : constant(term.value()));
+                    out.writeInt(string(term.prefix()));
+                    out.writeInt(string(term.suffix()));
+                } else if (node instanceof Variable variable) {
+                    out.writeByte(VARIABLE);
+                    out.writeInt(definition(node));
+                    out.writeInt(string(variable.key()));
+                    out.writeInt(string(variable.name()));
+                } else if (node instanceof Named) {
+                    out.writeByte(CALL);
+                    out.writeInt(definition(node));
+                } else if (node instanceof Arity arity) {
+                    out.writeByte(ARITY);
+                    out.writeInt(arity.arity());
+                } else if (node instanceof Comment comment) {
+                    out.writeByte(COMMENT);
+                    out.writeInt(definition(node));
+                    out.writeInt(string(comment.text()));
+                } else if (node instanceof Literal literal) {
+                    out.writeByte(LITERAL);
+                    out.writeInt(string(literal.value()));
+                } else {
+                    throw new IllegalArgumentException("Cannot store \"" + node + "\" of formula \""
+                            + formula.asFormula() + "\"");
+                }
+            }
+        }
+
+        private int definition(Object node) {
+            String id = parser.definitionId(node);
+            if (id == null) {
+                throw new IllegalArgumentException("\"" + node + "\" was not defined by the parser");
+            }
+            return string(id);
+        }
+
+        private int string(String string) {
+            return string == null ? NONE : strings.computeIfAbsent(string, ignored -> strings.size());
+        }
+
+        private int constant(ResolvedValue value) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            if (value instanceof QuotedTextResolvedValue quoted) {
+                out.writeByte(QUOTED_VALUE);
+                out.writeInt(constant(quoted.value()));
+                out.writeInt(string(quoted.startQuote()));
+                out.writeInt(string(quoted.endQuote()));
+            } else if (value instanceof NamedResolvedValue named) {
+                out.writeByte(NAMED_VALUE);
+                out.writeInt(constant(named.value()));
+                out.writeInt(string(named.asName()));
+                out.writeInt(string(named.prefix()));
+                out.writeInt(string(named.suffix()));
+            } else {
+                Object object = value.asObject();
+                if (object == null) {
+                    out.writeByte(NULL_VALUE);
+                } else if (object instanceof Integer number) {
+                    out.writeByte(INT_VALUE);
+                    out.writeInt(number);
+                } else if (object instanceof Double decimal) {
+                    out.writeByte(DECIMAL_VALUE);
+                    out.writeDouble(decimal);
+                } else if (object instanceof Boolean bool) {
+                    out.writeByte(bool ? TRUE_VALUE : FALSE_VALUE);
+                } else if (object instanceof List<?> values) {
+                    out.writeByte(LIST_VALUE);
+                    out.writeInt(values.size());
+                    for (Object element : values) {
+                        out.writeInt(constant((ResolvedValue) element));
+                    }
+                } else {
+                    out.writeByte(TEXT_VALUE);
+                    out.writeInt(string(object.toString()));
+                }
+            }
+            byte[] encoded = bytes.toByteArray();
+            Integer id = constants.get(ByteBuffer.wrap(encoded));
+            if (id == null) {
+                id = constantBytes.size();
+                constants.put(ByteBuffer.wrap(encoded), id);
+                constantBytes.add(encoded);
+            }
+            return id;
+        }
+
+        private static int tableSize(byte[][] entries) {
+            int size = (entries.length + 1) * Integer.BYTES;
+            for (byte[] entry : entries) {
+                size += entry.length;
+            }
+            return size;
+        }
+
+        private static void writeTable(DataOutputStream out, List<byte[]> entries) throws IOException {
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] entry : entries) {
+                offset += entry.length;
+                out.writeInt(offset);
+            }
+            for (byte[] entry : entries) {
+                out.write(entry);
+            }
+        }
+
+        private Writer(ShuntingYardParser parser) {
+            this.parser = parser;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package org.formula.parse.shuntingyard;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.formula.parse.shuntingyard.ClassFileWriter.Code;
+import org.formula.util.Lambda0;
+import org.formula.util.Lambda2;
+
+/**
+ * Compiles parsed formulas into hidden classes whose {@code resolve} method calls the registered operator and
+ * function lambdas directly, instead of interpreting the shunting-yard program.
+ * <p>
+ * Formulas that cannot be compiled (for example ones with missing parameters, which only fail once resolved) are
+ * returned unchanged, so the result can always be used in place of the original {@link Resolvable}.
+ */
+public class FormulaCompiler {
+    private static final int MAX_INSTRUCTIONS = 2048;
+    private static final int MAX_STACK = 8;
+
+    private static final String CLASS_NAME = "org/formula/parse/shuntingyard/CompiledFormula";
+    private static final String OPERAND_CLASS_NAME = "org/formula/parse/shuntingyard/CompiledOperand";
+    private static final String CONTEXT_FIELD = "context";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String OBJECT_ARRAY = "[Ljava/lang/Object;";
+    private static final String STRING = "java/lang/String";
+    private static final String LIST = "java/util/List";
+    private static final String ARRAY_LIST = "java/util/ArrayList";
+    private static final String SET = "java/util/Set";
+    private static final String METHOD_HANDLES = "java/lang/invoke/MethodHandles";
+    private static final String LOOKUP = "java/lang/invoke/MethodHandles$Lookup";
+    private static final String RESOLVABLE = internalName(Resolvable.class);
+    private static final String RESOLVED_VALUE = internalName(ResolvedValue.class);
+    private static final String DATA_CONTEXT = "org/formula/context/DataContext";
+    private static final String VARIABLE = internalName(Variable.class);
+    private static final String LAMBDA0 = internalName(Lambda0.class);
+    private static final String LAMBDA2 = internalName(Lambda2.class);
+    private static final String METHOD_HANDLE = "java/lang/invoke/MethodHandle";
+
+    private static final String RESOLVE_DESCRIPTOR = "(L" + DATA_CONTEXT + ";)L" + RESOLVED_VALUE + ";";
+    private static final String OPERAND_CONSTRUCTOR_DESCRIPTOR = "(L" + DATA_CONTEXT + ";)L" + LAMBDA0 + ";";
+
+    private static final MethodHandles.Lookup LOOKUP_CONTEXT = MethodHandles.lookup();
+
+    public static Resolvable compile(Resolvable resolvable) {
+        if (!(resolvable instanceof ShuntingYard shuntingYard)) {
+            return resolvable;
+        }
+
+        Program program = shuntingYard.program();
+        if (program.size() > MAX_INSTRUCTIONS) {
+            return resolvable;
+        }
+
+        try {
+            Compilation compilation = new Compilation(program, CLASS_NAME, RESOLVABLE);
+            ClassFileWriter writer = compilation.writer;
+            Code resolve = writer.addMethod(ClassFileWriter.ACC_PUBLIC, "resolve", RESOLVE_DESCRIPTOR);
+            if (!compilation.emit(resolve, 1, 0, program.size())) {
+                return resolvable;
+            }
+
+            writer.addMethod(ClassFileWriter.ACC_PUBLIC, "asFormula", "()L" + STRING + ";")
+                    .ldc(shuntingYard.asFormula())
+                    .areturn()
+                    .end(1, 1);
+            Code dependencies = writer.addMethod(ClassFileWriter.ACC_PUBLIC, "dependencies", "()L" + SET + ";");
+            compilation.getConstant(dependencies, shuntingYard.dependencies(), SET);
+            dependencies.areturn().end(1, 1);
+            writer.addMethod(ClassFileWriter.ACC_PUBLIC, "toString", "()L" + STRING + ";")
+                    .ldc(shuntingYard.asFormula())
+                    .areturn()
+                    .end(1, 1);
+            writer.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V")
+                    .aload(0)
+                    .invokespecial(OBJECT, "<init>", "()V")
+                    .vreturn()
+                    .end(1, 1);
+
+            MethodHandles.Lookup lookup = compilation.define();
+            return (Resolvable) lookup
+                    .findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to compile formula: " + shuntingYard.asFormula(), e);
+        }
+    }
+
+    /**
+     * One hidden class being compiled, with the constants its static initializer reads from its class data.
+     * <p>
+     * Each operand of a lazy operator is compiled into a hidden class of its own, whose {@code execute} evaluates the
+     * operand against the context it was created with. The class that uses it creates one through a constructor
+     * handle held in a static final field, which the JIT treats as a constant.
+     */
+    private static class Compilation {
+        private final Program program;
+        private final String className;
+        private final ClassFileWriter writer;
+        private final List<Object> constants = new ArrayList<>();
+        private final List<String> constantTypes = new ArrayList<>();
+
+        /**
+         * Emits the instructions from {@code from} to {@code to} into {@code code}, ending it with a return of their
+         * result. Returns false if they cannot be compiled.
+         */
+        boolean emit(Code code, int contextLocal, int from, int to) throws ReflectiveOperationException {
+            int firstValueLocal = contextLocal + 1;
+            int[] stack = new int[program.maxDepth()];
+            int sp = 0;
+            for (int pc = from; pc < to; pc++) {
+                pc = program.skip(pc, to);
+                Object operand = program.operand(pc);
+                int opcode = program.opcode(pc);
+                int[] operandBounds = program.bounds(pc);
+                boolean lazy = opcode == Program.LAZY2 || opcode == Program.LAZY3;
+                if (lazy && operandBounds == null) {
+                    return false;
+                }
+                int consumed = lazy ? 0 : Program.consumed(opcode, program.arity(pc));
+                if (program.arity(pc) < 0 || consumed > sp) {
+                    return false;
+                }
+                sp -= consumed;
+
+                switch (opcode) {
+                    case Program.PUSH -> {
+                        if (!(operand instanceof ResolvedValue)) {
+                            return false;
+                        }
+                        getConstant(code, operand, RESOLVED_VALUE);
+                    }
+                    case Program.RESOLVE -> {
+                        getConstant(code, operand, RESOLVABLE);
+                        code.aload(contextLocal)
+                                .invokeinterface(RESOLVABLE, "resolve", RESOLVE_DESCRIPTOR, 1);
+                    }
+                    case Program.VARIABLE -> {
+                        getConstant(code, operand, VARIABLE);
+                        code.aload(contextLocal)
+                                .invokevirtual(VARIABLE, "get", RESOLVE_DESCRIPTOR);
+                    }
+                    case Program.CALL0 -> {
+                        getConstant(code, unwrap(operand), functionType(0));
+                        code.invokeinterface(functionType(0), "execute", "()L" + RESOLVED_VALUE + ";", 0);
+                    }
+                    case Program.CALL1, Program.CALL2, Program.CALL3 -> {
+                        String functionType = functionType(consumed);
+                        getConstant(code, unwrap(operand), functionType);
+                        for (int i = 0; i < consumed; i++) {
+                            code.aload(stack[sp + i]);
+                        }
+                        code.invokeinterface(functionType, "execute", executeDescriptor(consumed), consumed);
+                    }
+                    case Program.CALLN -> {
+                        String functionType = internalName(OperatorFunctionN.class);
+                        getConstant(code, unwrap(operand), functionType);
+                        code.newInstance(ARRAY_LIST)
+                                .dup()
+                                .ldc(consumed)
+                                .invokespecial(ARRAY_LIST, "<init>", "(I)V");
+                        for (int i = 0; i < consumed; i++) {
+                            code.dup()
+                                    .aload(stack[sp + i])
+                                    .invokeinterface(LIST, "add", "(L" + OBJECT + ";)Z", 1)
+                                    .pop();
+                        }
+                        code.invokeinterface(functionType, "execute", "(L" + LIST + ";)L" + RESOLVED_VALUE + ";", 1);
+                    }
+                    case Program.LAZY2, Program.LAZY3 -> {
+                        int arity = operandBounds.length - 1;
+                        String functionType = lazyFunctionType(arity);
+                        getConstant(code, unwrap(operand), functionType);
+                        for (int i = 0; i < arity; i++) {
+                            MethodHandle operandConstructor = new Compilation(program, OPERAND_CLASS_NAME, LAMBDA0)
+                                    .defineOperand(operandBounds[i], operandBounds[i + 1]);
+                            if (operandConstructor == null) {
+                                return false;
+                            }
+                            getConstant(code, operandConstructor, METHOD_HANDLE);
+                            code.aload(contextLocal)
+                                    .invokevirtual(METHOD_HANDLE, "invokeExact", OPERAND_CONSTRUCTOR_DESCRIPTOR);
+                        }
+                        code.invokeinterface(functionType, "execute",
+                                "(" + ("L" + LAMBDA0 + ";").repeat(arity) + ")L" + RESOLVED_VALUE + ";", arity);
+                    }
+                    case Program.COMMENT -> {
+                        Comment comment = (Comment) operand;
+                        getConstant(code, comment.fn(), LAMBDA2);
+                        code.aload(stack[sp]);
+                        getConstant(code, comment.text(), STRING);
+                        code.invokeinterface(LAMBDA2, "execute",
+                                        "(L" + OBJECT + ";L" + OBJECT + ";)L" + OBJECT + ";", 2)
+                                .checkcast(RESOLVED_VALUE);
+                    }
+                    default -> {
+                        return false;
+                    }
+                }
+
+                int local = firstValueLocal + pc;
+                code.astore(local);
+                stack[sp++] = local;
+            }
+
+            if (sp == 0) {
+                return false;
+            }
+            code.aload(stack[sp - 1]).areturn();
+            code.end(MAX_STACK, firstValueLocal + program.size());
+            return true;
+        }
+
+        /**
+         * Defines a {@link Lambda0} class that evaluates the instructions from {@code from} to {@code to}, returning
+         * its constructor as a {@code (DataContext)Lambda0} handle, or null if they cannot be compiled.
+         */
+        MethodHandle defineOperand(int from, int to) throws ReflectiveOperationException {
+            String contextDescriptor = "L" + DATA_CONTEXT + ";";
+            writer.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, CONTEXT_FIELD, contextDescriptor);
+            Code execute = writer.addMethod(ClassFileWriter.ACC_PUBLIC, "execute", "()L" + OBJECT + ";")
+                    .aload(0)
+                    .getfield(className, CONTEXT_FIELD, contextDescriptor)
+                    .astore(1);
+            if (!emit(execute, 1, from, to)) {
+                return null;
+            }
+            writer.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "(" + contextDescriptor + ")V")
+                    .aload(0)
+                    .invokespecial(OBJECT, "<init>", "()V")
+                    .aload(0)
+                    .aload(1)
+                    .putfield(className, CONTEXT_FIELD, contextDescriptor)
+                    .vreturn()
+                    .end(2, 2);
+
+            MethodHandles.Lookup lookup = define();
+            return lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, DataContext.class))
+                    .asType(MethodType.methodType(Lambda0.class, DataContext.class));
+        }
+
+        MethodHandles.Lookup define() throws IllegalAccessException {
+            Code initializer = writer.addMethod(ClassFileWriter.ACC_STATIC, "<clinit>", "()V")
+                    .invokestatic(METHOD_HANDLES, "lookup", "()L" + LOOKUP + ";")
+                    .ldc("_")
+                    .ldcClass(OBJECT_ARRAY)
+                    .invokestatic(METHOD_HANDLES, "classData",
+                            "(L" + LOOKUP + ";L" + STRING + ";Ljava/lang/Class;)L" + OBJECT + ";")
+                    .checkcast(OBJECT_ARRAY)
+                    .astore(0);
+            for (int i = 0; i < constants.size(); i++) {
+                String descriptor = "L" + constantTypes.get(i) + ";";
+                writer.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC | ClassFileWriter.ACC_FINAL,
+                        constantName(i), descriptor);
+                initializer.aload(0)
+                        .ldc(i)
+                        .aaload()
+                        .checkcast(constantTypes.get(i))
+                        .putstatic(className, constantName(i), descriptor);
+            }
+            initializer.vreturn().end(3, 1);
+
+            return LOOKUP_CONTEXT.defineHiddenClassWithClassData(writer.toByteArray(), constants.toArray(), true);
+        }
+
+        void getConstant(Code code, Object value, String type) {
+            int index = constants.size();
+            constants.add(value);
+            constantTypes.add(type);
+            code.getstatic(className, constantName(index), "L" + type + ";");
+        }
+
+        Compilation(Program program, String className, String interfaceName) {
+            this.program = program;
+            this.className = className;
+            this.writer = new ClassFileWriter(className, OBJECT).addInterface(interfaceName);
+        }
+    }
+
+    private static Object unwrap(Object function) {
+        if (function instanceof Operator0 operator) return operator.fn();
+        if (function instanceof Operator1 operator) return operator.fn();
+        if (function instanceof Operator2 operator) return operator.fn();
+        if (function instanceof Operator3 operator) return operator.fn();
+        if (function instanceof Function0 func) return func.fn();
+        if (function instanceof Function1 func) return func.fn();
+        if (function instanceof Function2 func) return func.fn();
+        if (function instanceof Function3 func) return func.fn();
+        if (function instanceof FunctionN func) return func.fn();
+        if (function instanceof LazyOperator2 operator) return operator.fn();
+        if (function instanceof LazyFunction3 func) return func.fn();
+        return function;
+    }
+
+    private static String functionType(int arity) {
+        return switch (arity) {
+            case 0 -> internalName(OperatorFunction0.class);
+            case 1 -> internalName(OperatorFunction1.class);
+            case 2 -> internalName(OperatorFunction2.class);
+            case 3 -> internalName(OperatorFunction3.class);
+            default -> throw new IllegalArgumentException("No fixed arity function type for " + arity);
+        };
+    }
+
+    private static String lazyFunctionType(int arity) {
+        return switch (arity) {
+            case 2 -> internalName(LazyOperatorFunction2.class);
+            case 3 -> internalName(LazyOperatorFunction3.class);
+            default -> throw new IllegalArgumentException("No lazy function type for " + arity);
+        };
+    }
+
+    private static String executeDescriptor(int arity) {
+        return "(" + ("L" + RESOLVED_VALUE + ";").repeat(arity) + ")L" + RESOLVED_VALUE + ";";
+    }
+
+    private static String constantName(int index) {
+        return "c" + index;
+    }
+
+
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    private FormulaCompiler() {}
+}
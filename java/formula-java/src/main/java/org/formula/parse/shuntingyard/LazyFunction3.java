@@ -0,0 +1,17 @@
+package org.formula.parse.shuntingyard;
+
+import org.formula.ResolvedValue;
+import org.formula.util.Lambda0;
+
+public record LazyFunction3(String name, LazyOperatorFunction3 fn) implements Function, LazyOperatorFunction3 {
+
+    @Override
+    public ResolvedValue execute(Lambda0<ResolvedValue> a1, Lambda0<ResolvedValue> a2, Lambda0<ResolvedValue> a3) {
+        return fn.execute(a1, a2, a3);
+    }
+
+    @Override
+    public String toString() {
+        return name + "(a, b, c)";
+    }
+}
@@ -0,0 +1,17 @@
+package org.formula.parse.shuntingyard;
+
+import org.formula.ResolvedValue;
+import org.formula.util.Lambda0;
+
+public record LazyOperator2(String name, int precedence, Associativity associativity, LazyOperatorFunction2 fn) implements Operator, LazyOperatorFunction2 {
+
+    @Override
+    public ResolvedValue execute(Lambda0<ResolvedValue> a1, Lambda0<ResolvedValue> a2) {
+        return fn.execute(a1, a2);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
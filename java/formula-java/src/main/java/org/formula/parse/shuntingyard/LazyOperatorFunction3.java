@@ -0,0 +1,9 @@
+package org.formula.parse.shuntingyard;
+
+import org.formula.ResolvedValue;
+import org.formula.util.Lambda0;
+
+public interface LazyOperatorFunction3 {
+
+    ResolvedValue execute(Lambda0<ResolvedValue> a1, Lambda0<ResolvedValue> a2, Lambda0<ResolvedValue> a3);
+}
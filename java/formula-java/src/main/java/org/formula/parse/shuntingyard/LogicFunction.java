@@ -0,0 +1,22 @@
+package org.formula.parse.shuntingyard;
+
+import org.formula.ResolvedValue;
+
+/**
+ * The built-in unary boolean functions. {@link #TRUTH} has no symbol of its own; the optimizer uses it in place of
+ * operations that only convert their operand to a boolean, such as {@code !!@a} or {@code @a AND true}.
+ */
+public enum LogicFunction implements OperatorFunction1 {
+    NOT {
+        @Override
+        public ResolvedValue execute(ResolvedValue a1) {
+            return ResolvedValue.of(!a1.asBoolean());
+        }
+    },
+    TRUTH {
+        @Override
+        public ResolvedValue execute(ResolvedValue a1) {
+            return ResolvedValue.of(a1.asBoolean());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.formula.parse.shuntingyard;
+
+import org.formula.ResolvedValue;
+import org.formula.util.Lambda0;
+
+/**
+ * The built-in short-circuiting boolean operators. The optimizer recognises these when simplifying boolean
+ * expressions.
+ */
+public enum LogicOperator implements LazyOperatorFunction2 {
+    AND {
+        @Override
+        public ResolvedValue execute(Lambda0<ResolvedValue> a1, Lambda0<ResolvedValue> a2) {
+            return ResolvedValue.of(a1.execute().asBoolean() && a2.execute().asBoolean());
+        }
+    },
+    OR {
+        @Override
+        public ResolvedValue execute(Lambda0<ResolvedValue> a1, Lambda0<ResolvedValue> a2) {
+            return ResolvedValue.of(a1.execute().asBoolean() || a2.execute().asBoolean());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.formula.parse.shuntingyard;
+
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+
+enum LookupVariableResolver implements VariableResolver {
+    INSTANCE;
+
+    @Override
+    public ResolvedValue resolve(DataContext context, String key) {
+        if (key.contains("*")) {
+            return ResolvedValue.of(context.search(key).toList());
+        }
+        return context.get(key);
+    }
+
+    @Override
+    public boolean isLookup(String key) {
+        return !key.contains("*");
+    }
+}
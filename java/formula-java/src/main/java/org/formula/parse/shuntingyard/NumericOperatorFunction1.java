@@ -0,0 +1,17 @@
+package org.formula.parse.shuntingyard;
+
+import org.formula.ResolvedValue;
+
+/**
+ * A function of one number. The result must only depend on the operand, so subexpressions built from these can be
+ * evaluated on primitive doubles without boxing each intermediate value.
+ */
+public interface NumericOperatorFunction1 extends OperatorFunction1 {
+
+    double executeAsDouble(double a1);
+
+    @Override
+    default ResolvedValue execute(ResolvedValue a1) {
+        return ResolvedValue.of(executeAsDouble(a1.asDecimal()));
+    }
+}
@@ -0,0 +1,17 @@
+package org.formula.parse.shuntingyard;
+
+import org.formula.ResolvedValue;
+
+/**
+ * A function of two numbers. The result must only depend on the operands, so subexpressions built from these can be
+ * evaluated on primitive doubles without boxing each intermediate value.
+ */
+public interface NumericOperatorFunction2 extends OperatorFunction2 {
+
+    double executeAsDouble(double a1, double a2);
+
+    @Override
+    default ResolvedValue execute(ResolvedValue a1, ResolvedValue a2) {
+        return ResolvedValue.of(executeAsDouble(a1.asDecimal(), a2.asDecimal()));
+    }
+}
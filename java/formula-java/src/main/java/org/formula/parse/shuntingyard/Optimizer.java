@@ -0,0 +1,206 @@
+package org.formula.parse.shuntingyard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+
+/**
+ * Rewrites a shunting-yard output buffer into a cheaper one with the same result. The buffer is turned into an
+ * expression tree, rewritten bottom-up, and written back out, with {@link ConstantFolder} run before and after so
+ * that constants exposed by the rewrites are folded too.
+ */
+final class Optimizer {
+    static final Function1 TRUTH = new Function1("truth", LogicFunction.TRUTH);
+
+    static List<Object> optimize(List<Object> nodes, Set<String> pure) {
+        List<Object> folded = ConstantFolder.fold(nodes, pure);
+        Expression expression = Expression.of(folded);
+        if (expression == null) {
+            return folded;
+        }
+        List<Object> optimized = new ArrayList<>();
+        rewrite(expression).writeTo(optimized);
+        return ConstantFolder.fold(optimized, pure);
+    }
+
+    private static Expression rewrite(Expression expression) {
+        if (expression.operands().isEmpty()) {
+            return expression;
+        }
+        List<Expression> operands = new ArrayList<>(expression.operands().size());
+        for (Expression operand : expression.operands()) {
+            operands.add(rewrite(operand));
+        }
+        Expression rewritten = new Expression(expression.node(), expression.arity(), operands);
+
+        Object fn = function(rewritten.node());
+        if (fn == ArithmeticOperator.ADD || fn == ArithmeticOperator.MULTIPLY) {
+            return mergeConstants(rewritten, (ArithmeticOperator) fn);
+        } else if (fn == LogicOperator.AND || fn == LogicOperator.OR) {
+            return simplify(rewritten, (LogicOperator) fn);
+        } else if (fn == LogicFunction.NOT || fn == LogicFunction.TRUTH) {
+            return simplify(rewritten, (LogicFunction) fn);
+        }
+        return rewritten;
+    }
+
+    /**
+     * Flattens a chain of the same arithmetic operator and combines its constants into one, so
+     * {@code 1 + @a + 2} becomes {@code @a + 3}.
+     */
+    private static Expression mergeConstants(Expression expression, ArithmeticOperator operator) {
+        List<Expression> chain = new ArrayList<>();
+        flatten(expression, operator, chain);
+        List<Expression> variables = new ArrayList<>();
+        ResolvedValue combined = null;
+        int constants = 0;
+        for (Expression operand : chain) {
+            ResolvedValue value = constant(operand);
+            if (value == null) {
+                variables.add(operand);
+                continue;
+            }
+            try {
+                combined = combined == null ? value : operator.execute(combined, value);
+            } catch (RuntimeException e) {
+                return expression;
+            }
+            constants++;
+        }
+        if (constants < 2 || variables.isEmpty()) {
+            return expression;
+        }
+
+        Expression merged = variables.get(0);
+        for (int i = 1; i < variables.size(); i++) {
+            merged = new Expression(expression.node(), merged, variables.get(i));
+        }
+        return new Expression(expression.node(), merged, Expression.leaf(Term.of(combined)));
+    }
+
+    private static void flatten(Expression expression, ArithmeticOperator operator, List<Expression> chain) {
+        if (function(expression.node()) != operator) {
+            chain.add(expression);
+            return;
+        }
+        for (Expression operand : expression.operands()) {
+            flatten(operand, operator, chain);
+        }
+    }
+
+    private static Expression simplify(Expression expression, LogicOperator operator) {
+        Expression left = expression.operands().get(0);
+        Expression right = expression.operands().get(1);
+        boolean identity = operator == LogicOperator.AND;
+        if (isConstant(left, identity)) {
+            return truth(right);
+        } else if (isConstant(right, identity)) {
+            return truth(left);
+        }
+        return expression;
+    }
+
+    private static Expression simplify(Expression expression, LogicFunction function) {
+        Expression operand = expression.operands().get(0);
+        Object operandFunction = function(operand.node());
+        if (function == LogicFunction.TRUTH) {
+            return truth(operand);
+        } else if (operandFunction == LogicFunction.NOT) {
+            return truth(operand.operands().get(0));
+        } else if (operandFunction == LogicFunction.TRUTH) {
+            return new Expression(expression.node(), operand.operands().get(0));
+        }
+        return expression;
+    }
+
+    /**
+     * Converts the expression's value to a boolean, unless it already is one.
+     */
+    private static Expression truth(Expression expression) {
+        Object fn = function(expression.node());
+        if (fn instanceof LogicOperator || fn instanceof LogicFunction || fn instanceof ComparisonOperatorFunction2) {
+            return expression;
+        }
+        if (isConstant(expression, true) || isConstant(expression, false)) {
+            return Expression.leaf(Term.of(ResolvedValue.of(isConstant(expression, true))));
+        }
+        return new Expression(TRUTH, expression);
+    }
+
+    private static boolean isConstant(Expression expression, boolean expected) {
+        ResolvedValue value = constant(expression);
+        try {
+            return value != null && value.asBoolean() == expected;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static ResolvedValue constant(Expression expression) {
+        return expression.node() instanceof Term term ? term.resolve(DataContext.EMPTY) : null;
+    }
+
+    private static Object function(Object node) {
+        if (node instanceof Operator1 operator) return operator.fn();
+        if (node instanceof Operator2 operator) return operator.fn();
+        if (node instanceof Function1 func) return func.fn();
+        if (node instanceof Function2 func) return func.fn();
+        if (node instanceof LazyOperator2 operator) return operator.fn();
+        return node;
+    }
+
+    private record Expression(Object node, int arity, List<Expression> operands) {
+
+        Expression(Object node, Expression... operands) {
+            this(node, operands.length, List.of(operands));
+        }
+
+        static Expression leaf(Object node) {
+            return new Expression(node, 0, List.of());
+        }
+
+        /**
+         * Returns the tree for a whole output buffer, or null if it does not hold exactly one well-formed expression.
+         */
+        static Expression of(List<Object> nodes) {
+            List<Expression> stack = new ArrayList<>();
+            int pendingArity = ConstantFolder.UNKNOWN_ARITY;
+            for (Object node : nodes) {
+                if (node instanceof Arity arity) {
+                    pendingArity = arity.arity();
+                    continue;
+                }
+                int arity = node instanceof OperatorFunctionN ? pendingArity : 0;
+                if (node instanceof OperatorFunctionN) {
+                    if (pendingArity == ConstantFolder.UNKNOWN_ARITY) {
+                        return null;
+                    }
+                    pendingArity = ConstantFolder.UNKNOWN_ARITY;
+                }
+                int consumed = ConstantFolder.consumed(node, arity);
+                if (consumed > stack.size()) {
+                    return null;
+                }
+                List<Expression> operands = List.copyOf(stack.subList(stack.size() - consumed, stack.size()));
+                stack.subList(stack.size() - consumed, stack.size()).clear();
+                stack.add(new Expression(node, arity, operands));
+            }
+            return stack.size() == 1 ? stack.get(0) : null;
+        }
+
+        void writeTo(List<Object> nodes) {
+            for (Expression operand : operands) {
+                operand.writeTo(nodes);
+            }
+            if (node instanceof OperatorFunctionN) {
+                nodes.add(new Arity(arity));
+            }
+            nodes.add(node);
+        }
+    }
+
+    private Optimizer() {
+    }
+}
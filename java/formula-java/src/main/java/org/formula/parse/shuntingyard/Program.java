@@ -0,0 +1,574 @@
+package org.formula.parse.shuntingyard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.formula.Resolvable;
+import org.formula.ResolveException;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.formula.context.IndexedDataContext;
+import org.formula.context.SymbolTable;
+import org.formula.util.Lambda0;
+
+/**
+ * Flat instruction form of a shunting-yard output buffer. Arities and the maximum stack depth are worked out when
+ * the program is compiled, so evaluating it is a single pass over the instructions.
+ * <p>
+ * The operands of lazy operators are skipped over on that pass. Each lazy instruction records where its operands
+ * start and end, so they can be evaluated on demand.
+ * <p>
+ * Subexpressions made only of numbers, variables and {@link NumericOperatorFunction1}/{@link NumericOperatorFunction2}
+ * operators are evaluated on a {@code double} stack, boxing only the result. If one of their values is missing or is
+ * not a number, the rest of the subexpression is evaluated the usual way instead, so the result is the same either
+ * way and no value is read twice.
+ * <p>
+ * Variables read more than once and pure subexpressions that appear more than once are evaluated once per evaluation
+ * and then reused, see {@link SharedValues}.
+ * <p>
+ * A program bound to a {@link SymbolTable} reads its variables by id when it is executed against an
+ * {@link IndexedDataContext} that shares the symbol table.
+ */
+final class Program {
+    static final int PUSH = 0;
+    static final int RESOLVE = 1;
+    static final int VARIABLE = 2;
+    static final int CALL0 = 3;
+    static final int CALL1 = 4;
+    static final int CALL2 = 5;
+    static final int CALL3 = 6;
+    static final int CALLN = 7;
+    static final int COMMENT = 8;
+    static final int LAZY2 = 9;
+    static final int LAZY3 = 10;
+
+    private static final int UNKNOWN_ARITY = -1;
+    private static final int NO_REGION = -1;
+
+    private final int[] opcodes;
+    private final Object[] operands;
+    private final int[] arities;
+    private final int[][] bounds;
+    private final int[][] skips;
+    private final int[] regions;
+    private final double[] numbers;
+    private final Object[] kernels;
+    private final SharedValues shared;
+    private final SymbolTable symbols;
+    private final int[] ids;
+    private final int maxDepth;
+
+    static Program compile(List<?> nodes) {
+        return compile(nodes, Set.of());
+    }
+
+    /**
+     * @param pure the names of the operators and functions that always return the same value for the same operands
+     */
+    static Program compile(List<?> nodes, Set<String> pure) {
+        int[] opcodes = new int[nodes.size()];
+        Object[] operands = new Object[nodes.size()];
+        int[] arities = new int[nodes.size()];
+        int[][] bounds = new int[nodes.size()][];
+        List<List<Integer>> skips = new ArrayList<>();
+        int[] starts = new int[nodes.size()];
+        boolean[] numericStarts = new boolean[nodes.size()];
+        boolean[] pureStarts = new boolean[nodes.size()];
+        int[] subexpressionStarts = new int[nodes.size()];
+        boolean[] pureSubexpressions = new boolean[nodes.size()];
+        int[] regions = null;
+        double[] numbers = new double[nodes.size()];
+        Object[] kernels = new Object[nodes.size()];
+        int depth = 0;
+
+        int count = 0;
+        int pendingArity = UNKNOWN_ARITY;
+        for (Object node : nodes) {
+            if (node instanceof Arity arity) {
+                pendingArity = arity.arity();
+                continue;
+            }
+
+            operands[count] = node;
+            if (node instanceof OperatorFunction0) {
+                opcodes[count] = CALL0;
+            } else if (node instanceof OperatorFunction1) {
+                opcodes[count] = CALL1;
+            } else if (node instanceof OperatorFunction2) {
+                opcodes[count] = CALL2;
+            } else if (node instanceof OperatorFunction3) {
+                opcodes[count] = CALL3;
+            } else if (node instanceof OperatorFunctionN) {
+                opcodes[count] = CALLN;
+                arities[count] = pendingArity;
+                pendingArity = UNKNOWN_ARITY;
+            } else if (node instanceof LazyOperatorFunction2) {
+                opcodes[count] = LAZY2;
+            } else if (node instanceof LazyOperatorFunction3) {
+                opcodes[count] = LAZY3;
+            } else if (node instanceof Variable) {
+                opcodes[count] = VARIABLE;
+            } else if (node instanceof Comment) {
+                opcodes[count] = COMMENT;
+            } else if (node instanceof Term term) {
+                opcodes[count] = PUSH;
+                operands[count] = term.resolve(DataContext.EMPTY);
+            } else if (node instanceof Resolvable) {
+                opcodes[count] = RESOLVE;
+            } else {
+                opcodes[count] = PUSH;
+            }
+
+            kernels[count] = numericKernel(opcodes[count], node);
+            boolean numeric = switch (opcodes[count]) {
+                case PUSH -> toNumber(operands[count], numbers, count);
+                case RESOLVE, VARIABLE -> true;
+                default -> false;
+            };
+
+            boolean pureCall = switch (opcodes[count]) {
+                case PUSH -> SharedValues.constantKey(operands[count]) != null;
+                case VARIABLE -> true;
+                case RESOLVE -> false;
+                default -> ConstantFolder.isPure(node, pure);
+            };
+
+            int consumed = consumed(opcodes[count], arities[count]);
+            int start = count;
+            if (consumed <= depth) {
+                depth -= consumed;
+                if (consumed > 0) {
+                    start = starts[depth];
+                }
+                for (int i = depth; i < depth + consumed; i++) {
+                    pureCall &= pureStarts[i];
+                }
+                if (kernels[count] != null) {
+                    numeric = true;
+                    for (int i = depth; i < depth + consumed; i++) {
+                        numeric &= numericStarts[i];
+                    }
+                    if (numeric) {
+                        if (regions == null) {
+                            regions = new int[nodes.size()];
+                            Arrays.fill(regions, NO_REGION);
+                        }
+                        regions[start] = count;
+                    }
+                }
+                if (opcodes[count] == LAZY2 || opcodes[count] == LAZY3) {
+                    int[] operandBounds = new int[consumed + 1];
+                    System.arraycopy(starts, depth, operandBounds, 0, consumed);
+                    operandBounds[consumed] = count;
+                    bounds[count] = operandBounds;
+                    while (skips.size() <= start) {
+                        skips.add(null);
+                    }
+                    if (skips.get(start) == null) {
+                        skips.set(start, new ArrayList<>());
+                    }
+                    skips.get(start).add(0, count);
+                }
+            } else {
+                depth = 0;
+                numeric = false;
+                pureCall = false;
+            }
+            subexpressionStarts[count] = start;
+            pureSubexpressions[count] = pureCall;
+            pureStarts[depth] = pureCall;
+            numericStarts[depth] = numeric;
+            starts[depth++] = start;
+            count++;
+        }
+
+        int[][] skipTargets = new int[count][];
+        for (int i = 0; i < skips.size(); i++) {
+            if (skips.get(i) != null) {
+                skipTargets[i] = skips.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        opcodes = Arrays.copyOf(opcodes, count);
+        operands = Arrays.copyOf(operands, count);
+        arities = Arrays.copyOf(arities, count);
+        SharedValues shared = SharedValues.find(opcodes, operands, arities,
+                Arrays.copyOf(subexpressionStarts, count), Arrays.copyOf(pureSubexpressions, count));
+        return new Program(opcodes, operands, arities, Arrays.copyOf(bounds, count), skipTargets,
+                regions == null ? null : Arrays.copyOf(regions, count),
+                Arrays.copyOf(numbers, count), Arrays.copyOf(kernels, count), shared, null, null);
+    }
+
+    /**
+     * Returns this program with the keys of its variables interned in {@code symbols}. Variables whose resolver does
+     * more than look their key up keep using it.
+     */
+    Program bind(SymbolTable symbols) {
+        int[] ids = new int[opcodes.length];
+        Arrays.fill(ids, SymbolTable.NO_ID);
+        for (int pc = 0; pc < opcodes.length; pc++) {
+            if (opcodes[pc] == VARIABLE && operands[pc] instanceof Variable variable
+                    && variable.variableResolver().isLookup(variable.name())) {
+                ids[pc] = symbols.intern(variable.name());
+            }
+        }
+        return new Program(opcodes, operands, arities, bounds, skips, regions, numbers, kernels, shared, symbols, ids);
+    }
+
+    ResolvedValue execute(DataContext context) {
+        return execute(context, newLocals(), 0, opcodes.length, null, null);
+    }
+
+    /**
+     * Executes the whole program once per context, reusing the same stacks for every one of them.
+     */
+    List<ResolvedValue> executeAll(List<? extends DataContext> contexts) {
+        Object[] stack = new Object[maxDepth];
+        double[] numericStack = regions == null ? null : new double[maxDepth];
+        List<ResolvedValue> results = new ArrayList<>(contexts.size());
+        ResolvedValue[] locals = newLocals();
+        for (DataContext context : contexts) {
+            if (locals != null) {
+                Arrays.fill(locals, null);
+            }
+            results.add(execute(context, locals, 0, opcodes.length, stack, numericStack));
+        }
+        return results;
+    }
+
+    private Lambda0<ResolvedValue> thunk(DataContext context, ResolvedValue[] locals, int from, int to) {
+        return () -> execute(context, locals, from, to, null, null);
+    }
+
+    private ResolvedValue[] newLocals() {
+        return shared == null ? null : new ResolvedValue[shared.size];
+    }
+
+    private ResolvedValue execute(DataContext context, ResolvedValue[] locals, int from, int to, Object[] stack,
+            double[] numericStack) {
+        if (from < to && regionEnd(from, to) == to - 1) {
+            return executeNumeric(context, locals, from, to - 1, numericStack);
+        }
+
+        if (stack == null) {
+            stack = new Object[maxDepth];
+        }
+        int sp = 0;
+
+        for (int pc = from; pc < to; pc++) {
+            if (shared != null && shared.loads[pc] != SharedValues.NO_SLOT) {
+                int end = shared.loadEnds[pc];
+                ResolvedValue value = locals[shared.loads[pc]];
+                // a skip past the end belongs to an enclosing lazy operator, whose operands must still be skipped
+                if (value != null && end < to && skip(pc, to) <= end) {
+                    stack[sp++] = value;
+                    pc = end;
+                    continue;
+                }
+            }
+            pc = skip(pc, to);
+            int end = regionEnd(pc, to);
+            if (end != NO_REGION) {
+                ResolvedValue value = executeNumeric(context, locals, pc, end, numericStack);
+                stack[sp++] = value;
+                pc = end;
+                store(locals, pc, value);
+                continue;
+            }
+            Object operand = operands[pc];
+            switch (opcodes[pc]) {
+                case PUSH -> stack[sp++] = operand;
+                case RESOLVE -> stack[sp++] = ((Resolvable) operand).resolve(context);
+                case VARIABLE -> stack[sp++] = read(context, locals, pc);
+                case CALL0 -> stack[sp++] = ((OperatorFunction0) operand).execute();
+                case CALL1 -> {
+                    checkParameters(operand, sp, 1);
+                    stack[sp - 1] = ((OperatorFunction1) operand).execute((ResolvedValue) stack[sp - 1]);
+                }
+                case CALL2 -> {
+                    checkParameters(operand, sp, 2);
+                    sp--;
+                    stack[sp - 1] = ((OperatorFunction2) operand).execute(
+                            (ResolvedValue) stack[sp - 1],
+                            (ResolvedValue) stack[sp]);
+                }
+                case CALL3 -> {
+                    checkParameters(operand, sp, 3);
+                    sp -= 2;
+                    stack[sp - 1] = ((OperatorFunction3) operand).execute(
+                            (ResolvedValue) stack[sp - 1],
+                            (ResolvedValue) stack[sp],
+                            (ResolvedValue) stack[sp + 1]);
+                }
+                case CALLN -> {
+                    int arity = arities[pc];
+                    if (arity == UNKNOWN_ARITY) {
+                        throw new ResolveException("Missing arity count for \"" + operand + "\"");
+                    }
+                    if (sp < arity) {
+                        throw new ResolveException("Missing parameter #" + (arity - sp - 1) + " for \"" + operand + "\"");
+                    }
+                    List<ResolvedValue> params = new ArrayList<>(arity);
+                    for (int i = sp - arity; i < sp; i++) {
+                        params.add((ResolvedValue) stack[i]);
+                    }
+                    sp -= arity;
+                    stack[sp++] = ((OperatorFunctionN) operand).execute(params);
+                }
+                case LAZY2 -> {
+                    checkBounds(operand, pc, sp, 2);
+                    int[] operandBounds = bounds[pc];
+                    stack[sp++] = ((LazyOperatorFunction2) operand).execute(
+                            thunk(context, locals, operandBounds[0], operandBounds[1]),
+                            thunk(context, locals, operandBounds[1], operandBounds[2]));
+                }
+                case LAZY3 -> {
+                    checkBounds(operand, pc, sp, 3);
+                    int[] operandBounds = bounds[pc];
+                    stack[sp++] = ((LazyOperatorFunction3) operand).execute(
+                            thunk(context, locals, operandBounds[0], operandBounds[1]),
+                            thunk(context, locals, operandBounds[1], operandBounds[2]),
+                            thunk(context, locals, operandBounds[2], operandBounds[3]));
+                }
+                case COMMENT -> {
+                    checkParameters(operand, sp, 1);
+                    Comment comment = (Comment) operand;
+                    stack[sp - 1] = comment.fn().execute((ResolvedValue) stack[sp - 1], comment.text());
+                }
+                default -> throw new IllegalStateException("Unknown opcode: " + opcodes[pc]);
+            }
+            store(locals, pc, (ResolvedValue) stack[sp - 1]);
+        }
+
+        if (sp == 0) {
+            throw new ResolveException("Nothing to resolve");
+        }
+        return (ResolvedValue) stack[sp - 1];
+    }
+
+    private ResolvedValue executeNumeric(DataContext context, ResolvedValue[] locals, int from, int end,
+            double[] stack) {
+        if (stack == null) {
+            stack = new double[maxDepth];
+        }
+        int sp = 0;
+
+        for (int pc = from; pc <= end; pc++) {
+            switch (opcodes[pc]) {
+                case PUSH -> stack[sp++] = numbers[pc];
+                case RESOLVE, VARIABLE -> {
+                    ResolvedValue value = fetch(context, locals, pc);
+                    if (!value.hasValue()) {
+                        return executeBoxed(context, locals, pc, end, stack, sp, value);
+                    }
+                    try {
+                        stack[sp] = value.asDecimal();
+                    } catch (RuntimeException e) {
+                        return executeBoxed(context, locals, pc, end, stack, sp, value);
+                    }
+                    sp++;
+                }
+                case CALL1 -> stack[sp - 1] = ((NumericOperatorFunction1) kernels[pc]).executeAsDouble(stack[sp - 1]);
+                case CALL2 -> {
+                    sp--;
+                    stack[sp - 1] = ((NumericOperatorFunction2) kernels[pc]).executeAsDouble(stack[sp - 1], stack[sp]);
+                }
+                default -> throw new IllegalStateException("Unexpected opcode in numeric expression: " + opcodes[pc]);
+            }
+        }
+
+        return kernels[end] instanceof ComparisonOperatorFunction2
+                ? ResolvedValue.of(stack[0] != 0.0)
+                : ResolvedValue.of(stack[0]);
+    }
+
+    /**
+     * Finishes a numeric region the usual way, once {@code value}, read at {@code pc}, turned out to be missing or not
+     * a number. The numbers already on {@code numbers} are boxed as they are, which gives the same result as boxing
+     * their values, since numeric functions only look at the numbers of their operands.
+     */
+    private ResolvedValue executeBoxed(DataContext context, ResolvedValue[] locals, int pc, int end, double[] numbers,
+            int depth, ResolvedValue value) {
+        ResolvedValue[] stack = new ResolvedValue[maxDepth];
+        for (int i = 0; i < depth; i++) {
+            stack[i] = ResolvedValue.of(numbers[i]);
+        }
+        int sp = depth;
+        stack[sp++] = value;
+
+        while (++pc <= end) {
+            switch (opcodes[pc]) {
+                case PUSH -> stack[sp++] = (ResolvedValue) operands[pc];
+                case RESOLVE, VARIABLE -> stack[sp++] = fetch(context, locals, pc);
+                case CALL1 -> stack[sp - 1] = ((OperatorFunction1) operands[pc]).execute(stack[sp - 1]);
+                case CALL2 -> {
+                    sp--;
+                    stack[sp - 1] = ((OperatorFunction2) operands[pc]).execute(stack[sp - 1], stack[sp]);
+                }
+                default -> throw new IllegalStateException("Unexpected opcode in numeric expression: " + opcodes[pc]);
+            }
+        }
+        return stack[0];
+    }
+
+    private ResolvedValue fetch(DataContext context, ResolvedValue[] locals, int pc) {
+        return opcodes[pc] == VARIABLE
+                ? read(context, locals, pc)
+                : ((Resolvable) operands[pc]).resolve(context);
+    }
+
+    private void store(ResolvedValue[] locals, int pc, ResolvedValue value) {
+        if (shared != null && shared.stores[pc] != SharedValues.NO_SLOT) {
+            locals[shared.stores[pc]] = value;
+        }
+    }
+
+    private ResolvedValue read(DataContext context, ResolvedValue[] locals, int pc) {
+        int slot = shared == null ? SharedValues.NO_SLOT : shared.reads[pc];
+        if (slot == SharedValues.NO_SLOT) {
+            return load(context, pc);
+        }
+        ResolvedValue value = locals[slot];
+        if (value == null) {
+            value = load(context, pc);
+            locals[slot] = value;
+        }
+        return value;
+    }
+
+    private ResolvedValue load(DataContext context, int pc) {
+        if (ids != null && ids[pc] != SymbolTable.NO_ID
+                && context instanceof IndexedDataContext indexed && indexed.symbols() == symbols) {
+            return indexed.get(ids[pc]);
+        }
+        return ((Variable) operands[pc]).get(context);
+    }
+
+    int regionEnd(int pc, int to) {
+        if (regions == null) {
+            return NO_REGION;
+        }
+        int end = regions[pc];
+        return end < to ? end : NO_REGION;
+    }
+
+    int skip(int pc, int to) {
+        int[] targets = skips[pc];
+        if (targets != null) {
+            for (int target : targets) {
+                if (target < to) {
+                    return target;
+                }
+            }
+        }
+        return pc;
+    }
+
+    int size() {
+        return opcodes.length;
+    }
+
+    int opcode(int index) {
+        return opcodes[index];
+    }
+
+    Object operand(int index) {
+        return operands[index];
+    }
+
+    double number(int index) {
+        return numbers[index];
+    }
+
+    Object kernel(int index) {
+        return kernels[index];
+    }
+
+    int arity(int index) {
+        return arities[index];
+    }
+
+    int[] bounds(int index) {
+        return bounds[index];
+    }
+
+    int maxDepth() {
+        return maxDepth;
+    }
+
+    static int consumed(int opcode, int arity) {
+        return switch (opcode) {
+            case CALL1, COMMENT -> 1;
+            case CALL2, LAZY2 -> 2;
+            case CALL3, LAZY3 -> 3;
+            case CALLN -> Math.max(arity, 0);
+            default -> 0;
+        };
+    }
+
+    private void checkBounds(Object func, int pc, int available, int required) {
+        if (bounds[pc] == null) {
+            // operands are only left on the stack when there were not enough of them to be evaluated lazily
+            checkParameters(func, available, required);
+            throw new IllegalStateException("Missing operand bounds for \"" + func + "\"");
+        }
+    }
+
+    private static void checkParameters(Object func, int available, int required) {
+        if (available < required) {
+            throw new ResolveException("Missing parameter #" + (available + 1) + " for \"" + func + "\"");
+        }
+    }
+
+    private static Object numericKernel(int opcode, Object node) {
+        Object fn = node;
+        if (node instanceof Operator1 operator) fn = operator.fn();
+        if (node instanceof Operator2 operator) fn = operator.fn();
+        if (node instanceof Function1 func) fn = func.fn();
+        if (node instanceof Function2 func) fn = func.fn();
+        return switch (opcode) {
+            case CALL1 -> fn instanceof NumericOperatorFunction1 ? fn : null;
+            case CALL2 -> fn instanceof NumericOperatorFunction2 ? fn : null;
+            default -> null;
+        };
+    }
+
+    private static boolean toNumber(Object operand, double[] numbers, int index) {
+        if (!(operand instanceof ResolvedValue value) || !value.hasValue()) {
+            return false;
+        }
+        try {
+            numbers[index] = value.asDecimal();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static int calculateMaxDepth(int[] opcodes, int[] arities) {
+        int depth = 0;
+        int maxDepth = 1;
+        for (int pc = 0; pc < opcodes.length; pc++) {
+            depth = Math.max(depth - consumed(opcodes[pc], arities[pc]), 0) + 1;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        return maxDepth;
+    }
+
+    private Program(int[] opcodes, Object[] operands, int[] arities, int[][] bounds, int[][] skips, int[] regions,
+            double[] numbers, Object[] kernels, SharedValues shared, SymbolTable symbols, int[] ids) {
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.arities = arities;
+        this.bounds = bounds;
+        this.skips = skips;
+        this.regions = regions;
+        this.numbers = numbers;
+        this.kernels = kernels;
+        this.shared = shared;
+        this.symbols = symbols;
+        this.ids = ids;
+        this.maxDepth = calculateMaxDepth(opcodes, arities);
+    }
+}
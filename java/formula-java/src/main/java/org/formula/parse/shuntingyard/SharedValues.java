@@ -0,0 +1,123 @@
+package org.formula.parse.shuntingyard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.formula.NamedResolvedValue;
+import org.formula.QuotedTextResolvedValue;
+import org.formula.ResolvedValue;
+
+/**
+ * The values a {@link Program} works out once per evaluation and then reuses: variables that are read more than once,
+ * and pure subexpressions that appear more than once, such as the two {@code @a * 2} in
+ * {@code max(@a * 2; @b) + @a * 2}. Each of them gets a slot in an array that lives as long as one evaluation.
+ * <p>
+ * A variable read fills its slot the first time and reads it after that. A subexpression fills its slot when its last
+ * instruction runs, and an occurrence that finds the slot filled pushes the value and jumps past its instructions.
+ */
+final class SharedValues {
+    static final int NO_SLOT = -1;
+
+    /** the slot of each repeated variable read */
+    final int[] reads;
+    /** the slot of the outermost repeated subexpression that starts at each instruction */
+    final int[] loads;
+    /** the last instruction of the subexpression in {@link #loads} */
+    final int[] loadEnds;
+    /** the slot filled by the repeated subexpression that ends at each instruction */
+    final int[] stores;
+    final int size;
+
+    /**
+     * @param starts the first instruction of the subexpression that ends at each instruction
+     * @param pure whether the subexpression that ends at each instruction only uses variables, constants and pure
+     * calls
+     * @return the shared values, or null if nothing is repeated
+     */
+    static SharedValues find(int[] opcodes, Object[] operands, int[] arities, int[] starts, boolean[] pure) {
+        int count = opcodes.length;
+        Object[] keys = new Object[count];
+        Map<Object, Integer> occurrences = new HashMap<>();
+        for (int pc = 0; pc < count; pc++) {
+            if (opcodes[pc] == Program.VARIABLE) {
+                keys[pc] = operands[pc];
+            } else if (pure[pc] && starts[pc] < pc) {
+                keys[pc] = key(opcodes, operands, arities, starts[pc], pc);
+            }
+            if (keys[pc] != null) {
+                occurrences.merge(keys[pc], 1, Integer::sum);
+            }
+        }
+
+        Map<Object, Integer> slots = new HashMap<>();
+        int[] reads = noSlots(count);
+        int[] loads = noSlots(count);
+        int[] loadEnds = noSlots(count);
+        int[] stores = noSlots(count);
+        for (int pc = 0; pc < count; pc++) {
+            if (keys[pc] == null || occurrences.get(keys[pc]) < 2) {
+                continue;
+            }
+            int slot = slots.computeIfAbsent(keys[pc], ignored -> slots.size());
+            if (opcodes[pc] == Program.VARIABLE) {
+                reads[pc] = slot;
+            } else {
+                // subexpressions are visited innermost first, so the last one starting here is the outermost
+                stores[pc] = slot;
+                loads[starts[pc]] = slot;
+                loadEnds[starts[pc]] = pc;
+            }
+        }
+        return slots.isEmpty() ? null : new SharedValues(reads, loads, loadEnds, stores, slots.size());
+    }
+
+    /**
+     * Returns a key for a constant that tells apart every value a formula could tell apart, or null if there is none.
+     */
+    static Object constantKey(Object operand) {
+        if (!(operand instanceof ResolvedValue value) || value instanceof NamedResolvedValue) {
+            return null;
+        }
+        if (!value.hasValue()) {
+            return value.getClass();
+        }
+        if (value.asList().size() != 1) {
+            return null;
+        }
+        String text = value instanceof QuotedTextResolvedValue quoted ? quoted.asQuotedText() : value.asText();
+        double number;
+        try {
+            number = value.asDecimal();
+        } catch (RuntimeException e) {
+            number = Double.NaN;
+        }
+        return List.of(value.getClass(), text, number);
+    }
+
+    private static List<Object> key(int[] opcodes, Object[] operands, int[] arities, int start, int end) {
+        List<Object> key = new ArrayList<>(end - start + 1);
+        for (int pc = start; pc <= end; pc++) {
+            key.add(opcodes[pc] == Program.PUSH ? constantKey(operands[pc]) : operands[pc]);
+            if (opcodes[pc] == Program.CALLN) {
+                key.add(arities[pc]);
+            }
+        }
+        return key;
+    }
+
+    private static int[] noSlots(int count) {
+        int[] slots = new int[count];
+        Arrays.fill(slots, NO_SLOT);
+        return slots;
+    }
+
+    private SharedValues(int[] reads, int[] loads, int[] loadEnds, int[] stores, int size) {
+        this.reads = reads;
+        this.loads = loads;
+        this.loadEnds = loadEnds;
+        this.stores = stores;
+        this.size = size;
+    }
+}
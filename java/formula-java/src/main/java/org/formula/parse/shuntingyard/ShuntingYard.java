@@ -1,62 +1,36 @@
 package org.formula.parse.shuntingyard;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import org.formula.Resolvable;
-import org.formula.ResolveException;
 import org.formula.ResolvedValue;
 import org.formula.context.DataContext;
+import org.formula.context.IndexedDataContext;
+import org.formula.context.SymbolTable;
 
 public class ShuntingYard implements Resolvable {
     private final List<Object> stack;
+    private final Program program;
     private final String originalFormula;
+    private final Set<String> dependencies;
+    private final Set<String> pure;
 
     @Override
     public ResolvedValue resolve(DataContext context) {
-        Deque<Object> localStack = new ArrayDeque<>();
-        Deque<Object> stack = new ArrayDeque<>(this.stack);
-        while (!stack.isEmpty()) {
-            Object next = stack.removeFirst();
-            if (next instanceof OperatorFunction0 func) {
-                localStack.addFirst(func.execute());
-            } else if (next instanceof OperatorFunction1 func) {
-                ResolvedValue a = (ResolvedValue) checkedPopParameter(next, 1, localStack);
-                localStack.addFirst(func.execute(a));
-            } else if (next instanceof OperatorFunction2 func) {
-                ResolvedValue b = (ResolvedValue) checkedPopParameter(next, 1, localStack);
-                ResolvedValue a = (ResolvedValue) checkedPopParameter(next, 2, localStack);
-                localStack.addFirst(func.execute(a, b));
-            } else if (next instanceof OperatorFunction3 func) {
-                ResolvedValue c = (ResolvedValue) checkedPopParameter(next, 1, localStack);
-                ResolvedValue b = (ResolvedValue) checkedPopParameter(next, 2, localStack);
-                ResolvedValue a = (ResolvedValue) checkedPopParameter(next, 3, localStack);
-                localStack.addFirst(func.execute(a, b, c));
-            } else if (next instanceof OperatorFunctionN func) {
-                if (localStack.isEmpty()) {
-                    throw new ResolveException("Missing arity count for \"" + func + "\"");
-                }
-                int arity = ((Arity) localStack.removeFirst()).arity();
-                List<ResolvedValue> params = new ArrayList<>();
-                while (arity-- > 0) {
-                    params.add(0, (ResolvedValue) checkedPopParameter(next, arity, localStack));
-                }
-                localStack.addFirst(func.execute(params));
-            } else if (next instanceof Variable variable) {
-                stack.addFirst(variable.get(context));
-            } else if (next instanceof Comment comment) {
-                localStack.addFirst(comment.fn().execute((ResolvedValue) localStack.removeFirst(), comment.text()));
-            } else {
-                if (next instanceof Resolvable resolvable) {
-                    next = resolvable.resolve(context);
-                }
-                localStack.addFirst(next);
-            }
-        }
+        return program.execute(context);
+    }
 
-        return (ResolvedValue) localStack.removeFirst();
+    @Override
+    public List<ResolvedValue> resolveAll(List<? extends DataContext> contexts) {
+        return Collections.unmodifiableList(program.executeAll(contexts));
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        return dependencies;
     }
 
     @Override
@@ -64,11 +38,32 @@ public class ShuntingYard implements Resolvable {
         return originalFormula;
     }
 
-    private Object checkedPopParameter(Object func, int parameterIndex, Deque<Object> stack) {
-        if (stack.isEmpty()) {
-            throw new ResolveException("Missing parameter #" + parameterIndex + " for \"" + func + "\"");
-        }
-        return stack.removeFirst();
+    /**
+     * Returns an equivalent formula that is cheaper to resolve: constants are folded, chains of additions and
+     * multiplications have their constants merged, and boolean operations that only convert their operand to a
+     * boolean are reduced.
+     * <p>
+     * Merging constants changes the order of additions and multiplications, so the last bits of a decimal result
+     * can differ from those of the original formula.
+     */
+    public ShuntingYard optimized() {
+        return new ShuntingYard(Optimizer.optimize(stack, pure), originalFormula, pure);
+    }
+
+    /**
+     * Returns this formula with its variables bound to ids in {@code symbols}, interning their keys there. When
+     * resolved against an {@link IndexedDataContext} with the same symbol table, it reads them by id.
+     */
+    public ShuntingYard bind(SymbolTable symbols) {
+        return new ShuntingYard(stack, program.bind(symbols), originalFormula, pure);
+    }
+
+    List<Object> stack() {
+        return stack;
+    }
+
+    Program program() {
+        return program;
     }
 
     @Override
@@ -90,7 +85,30 @@ public class ShuntingYard implements Resolvable {
     }
 
     public ShuntingYard(List<Object> stack, String originalFormula) {
+        this(stack, originalFormula, Set.of());
+    }
+
+    ShuntingYard(List<Object> stack, String originalFormula, Set<String> pure) {
+        this(stack, Program.compile(stack, pure), originalFormula, pure);
+    }
+
+    private ShuntingYard(List<Object> stack, Program program, String originalFormula, Set<String> pure) {
         this.stack = stack;
+        this.program = program;
         this.originalFormula = originalFormula;
+        this.dependencies = findDependencies(stack);
+        this.pure = pure;
+    }
+
+    private static Set<String> findDependencies(List<Object> stack) {
+        Set<String> dependencies = new LinkedHashSet<>();
+        for (Object node : stack) {
+            if (node instanceof Variable variable) {
+                dependencies.add(variable.name());
+            } else if (node instanceof Resolvable resolvable) {
+                dependencies.addAll(resolvable.dependencies());
+            }
+        }
+        return Collections.unmodifiableSet(dependencies);
     }
 }
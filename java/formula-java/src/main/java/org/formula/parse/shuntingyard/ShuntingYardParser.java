@@ -1,17 +1,31 @@
 package org.formula.parse.shuntingyard;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.Stack;
 import java.util.function.Supplier;
 import org.formula.Resolvable;
 import org.formula.ResolvedValue;
 import org.formula.parse.Parser;
 import org.formula.parse.tree.NodeExpression;
+import org.formula.parse.tree.TokenMapper;
 import org.formula.parse.tree.TokenTree;
+import org.formula.util.Decimals;
 import org.formula.util.Lambda2;
 
+/**
+ * Parses formulas with the operators, functions, variables and terms registered on it.
+ * <p>
+ * {@link #parse(String)} keeps its state on the calling thread, so one parser can parse from many threads at once.
+ * Everything must be registered before the parser is shared, since registering changes the lexer other threads read.
+ */
 public class ShuntingYardParser implements Parser {
     private static final String PARAMETERS_START_SYMBOL = "(";
     private static final String PARAMETERS_END_SYMBOL = ")";
@@ -21,6 +35,9 @@ public class ShuntingYardParser implements Parser {
     private static final Literal PARAMETERS_SEPARATOR_TOKEN = Literal.of(PARAMETERS_SEPARATOR_SYMBOL);
 
     private final TokenTree<Node> tokenTree;
+    private final Set<String> pure = new HashSet<>();
+    private final Map<String, Object> definitions = new HashMap<>();
+    private final Map<Object, List<Affixes>> affixes = new IdentityHashMap<>();
 
     public static ShuntingYardParser create() {
         return new ShuntingYardParser();
@@ -29,56 +46,115 @@ public class ShuntingYardParser implements Parser {
     public ShuntingYardParser() {
         tokenTree = TokenTree.<Node>create()
                 .ignoreWhitespaces()
-                .add(NodeExpression.INTEGER, token -> Term.of(Integer.parseInt(token)))
-                .add(NodeExpression.DECIMAL, token -> Term.of(Double.parseDouble(token)))
+                .add(NodeExpression.INTEGER,
+                        TokenMapper.range((text, start, end) -> Term.of(parseInteger(text, start, end))))
+                .add(NodeExpression.DECIMAL,
+                        TokenMapper.range((text, start, end) -> Term.of(Decimals.parse(text, start, end))))
                 .add(PARAMETERS_START_SYMBOL, ignored -> PARAMETERS_START_TOKEN)
                 .add(PARAMETERS_END_SYMBOL, ignored -> PARAMETERS_END_TOKEN)
                 .add(PARAMETERS_SEPARATOR_SYMBOL, ignored -> PARAMETERS_SEPARATOR_TOKEN)
                 .add(NodeExpression.literal("\"", "\"", "\\\""),
-                        quote -> Term.of(quote.substring(1, quote.length() - 1), "\"", "\""))
+                        TokenMapper.range((text, start, end) ->
+                                Term.of(text.substring(start + 1, end - 1), "\"", "\"")))
                 .add(NodeExpression.literal("'", "'", "\\'"),
-                        quote -> Term.of(quote.substring(1, quote.length() - 1), "'", "'"));
+                        TokenMapper.range((text, start, end) ->
+                                Term.of(text.substring(start + 1, end - 1), "'", "'")));
+        // not parsed from text, but written to catalogs by formulas the optimizer rewrote
+        define(Optimizer.TRUTH);
     }
 
     public ShuntingYardParser biOperator(String symbol, Operator1 unaryOperator, Operator2 binaryOperator) {
-        tokenTree.add(symbol, token -> new BiOperatorFunction(symbol, unaryOperator, binaryOperator));
+        define(unaryOperator);
+        define(binaryOperator);
+        BiOperatorFunction node = new BiOperatorFunction(symbol, unaryOperator, binaryOperator);
+        tokenTree.add(symbol, token -> node);
         return this;
     }
 
     public ShuntingYardParser operator(String symbol, int precedence, Associativity associativity,
             OperatorFunction1 fn) {
-        tokenTree.add(symbol, token -> new Operator1(symbol, precedence, associativity, fn));
+        Operator1 node = define(new Operator1(symbol, precedence, associativity, fn));
+        tokenTree.add(symbol, token -> node);
         return this;
     }
 
     public ShuntingYardParser operator(String symbol, int precedence, Associativity associativity,
             OperatorFunction2 fn) {
-        tokenTree.add(symbol, token -> new Operator2(symbol, precedence, associativity, fn));
+        Operator2 node = define(new Operator2(symbol, precedence, associativity, fn));
+        tokenTree.add(symbol, token -> node);
+        return this;
+    }
+
+    public ShuntingYardParser numericOperator(String symbol, int precedence, Associativity associativity,
+            NumericOperatorFunction1 fn) {
+        return operator(symbol, precedence, associativity, (OperatorFunction1) fn);
+    }
+
+    public ShuntingYardParser numericOperator(String symbol, int precedence, Associativity associativity,
+            NumericOperatorFunction2 fn) {
+        return operator(symbol, precedence, associativity, (OperatorFunction2) fn);
+    }
+
+    public ShuntingYardParser comparisonOperator(String symbol, int precedence, Associativity associativity,
+            ComparisonOperatorFunction2 fn) {
+        return operator(symbol, precedence, associativity, (OperatorFunction2) fn);
+    }
+
+    public ShuntingYardParser lazyOperator(String symbol, int precedence, Associativity associativity,
+            LazyOperatorFunction2 fn) {
+        LazyOperator2 node = define(new LazyOperator2(symbol, precedence, associativity, fn));
+        tokenTree.add(symbol, token -> node);
         return this;
     }
 
     public ShuntingYardParser function(String name, OperatorFunction0 fn) {
-        tokenTree.add(name, token -> new Function0(name, fn));
+        Function0 node = define(new Function0(name, fn));
+        tokenTree.add(name, token -> node);
         return this;
     }
 
     public ShuntingYardParser function(String name, OperatorFunction1 fn) {
-        tokenTree.add(name, token -> new Function1(name, fn));
+        Function1 node = define(new Function1(name, fn));
+        tokenTree.add(name, token -> node);
         return this;
     }
 
+    public ShuntingYardParser numericFunction(String name, NumericOperatorFunction1 fn) {
+        return function(name, (OperatorFunction1) fn);
+    }
+
     public ShuntingYardParser function(String name, OperatorFunction2 fn) {
-        tokenTree.add(name, token -> new Function2(name, fn));
+        Function2 node = define(new Function2(name, fn));
+        tokenTree.add(name, token -> node);
         return this;
     }
 
     public ShuntingYardParser function(String name, OperatorFunction3 fn) {
-        tokenTree.add(name, token -> new Function3(name, fn));
+        Function3 node = define(new Function3(name, fn));
+        tokenTree.add(name, token -> node);
         return this;
     }
 
-    public ShuntingYardParser function(String name, OperatorFunctionN fn) {
-        tokenTree.add(name, token -> new FunctionN(name, fn));
+    public ShuntingYardParser functionN(String name, OperatorFunctionN fn) {
+        FunctionN node = define(new FunctionN(name, fn));
+        tokenTree.add(name, token -> node);
+        return this;
+    }
+
+    public ShuntingYardParser lazyFunction(String name, LazyOperatorFunction3 fn) {
+        LazyFunction3 node = define(new LazyFunction3(name, fn));
+        tokenTree.add(name, token -> node);
+        return this;
+    }
+
+    /**
+     * Marks the operators and functions with these names as pure: they always return the same value for the same
+     * operands and have no side effects. Pure calls whose operands are all constants are evaluated once, when the
+     * formula is parsed, instead of every time it is resolved. Numeric operators and functions are always pure.
+     * Comments are marked pure by their prefix.
+     */
+    public ShuntingYardParser pure(String... names) {
+        pure.addAll(Arrays.asList(names));
         return this;
     }
 
@@ -88,8 +164,9 @@ public class ShuntingYardParser implements Parser {
                 NodeExpression.ALPHA,
                 NodeExpression.optional(NodeExpression.KEY)
         );
+        define(Variable.class, identifier, "", variableResolver);
         tokenTree.add(variableExpression,
-                key -> new Variable(key, (context, k) -> variableResolver.resolve(context, k.substring(identifier.length()))));
+                key -> new Variable(key, key.substring(identifier.length()), variableResolver));
         return this;
     }
 
@@ -100,21 +177,22 @@ public class ShuntingYardParser implements Parser {
                 NodeExpression.optional(NodeExpression.KEY),
                 NodeExpression.term(suffix)
         );
+        define(Variable.class, prefix, suffix, variableResolver);
         tokenTree.add(variableExpression,
-                key -> new Variable(key, (context, k) -> variableResolver.resolve(context,
-                        k.substring(prefix.length(), k.length() - suffix.length()))));
+                key -> new Variable(key, key.substring(prefix.length(), key.length() - suffix.length()),
+                        variableResolver));
         return this;
     }
 
     public ShuntingYardParser comment(String prefix, String suffix, Lambda2<ResolvedValue, String, ResolvedValue> fn) {
         NodeExpression commentExpression = NodeExpression.literal(prefix, suffix);
+        define(Comment.class, prefix, suffix, fn);
         tokenTree.add(commentExpression, token -> Comment.of(token, fn));
         return this;
     }
 
     public ShuntingYardParser term(String text, Supplier<ResolvedValue> extractor) {
-        NodeExpression termExpression = NodeExpression.term(text);
-        tokenTree.add(termExpression, key -> Term.of(extractor.get()));
+        tokenTree.add(text, key -> Term.of(extractor.get()));
         return this;
     }
 
@@ -225,6 +303,80 @@ public class ShuntingYardParser implements Parser {
         while (!operatorStack.isEmpty()) {
             outputBuffer.push(operatorStack.pop());
         }
-        return new ShuntingYard(Arrays.asList(outputBuffer.toArray()), text);
+        return new ShuntingYard(ConstantFolder.fold(Arrays.asList(outputBuffer.toArray()), pure), text, pure);
+    }
+
+    Set<String> pure() {
+        return pure;
+    }
+
+    /**
+     * Returns what was registered under an id from {@link #definitionId(Object)}: an operator or function node, a
+     * {@link VariableResolver}, or a comment function. Returns null if nothing was.
+     */
+    Object definition(String id) {
+        return definitions.get(id);
+    }
+
+    /**
+     * Returns the id of the registration {@code node} was made from, so it can be made again with
+     * {@link #definition(String)}, or null if it was not made by this parser.
+     */
+    String definitionId(Object node) {
+        if (node instanceof Named named) {
+            String id = definitionId(node.getClass(), named.name(), "");
+            return node.equals(definitions.get(id)) ? id : null;
+        }
+        if (node instanceof Variable variable) {
+            for (Affixes candidate : affixes.getOrDefault(variable.variableResolver(), List.of())) {
+                if (candidate.type() == Variable.class
+                        && variable.key().equals(candidate.prefix() + variable.name() + candidate.suffix())) {
+                    return candidate.id();
+                }
+            }
+        } else if (node instanceof Comment comment) {
+            for (Affixes candidate : affixes.getOrDefault(comment.fn(), List.of())) {
+                if (candidate.type() == Comment.class
+                        && comment.text().startsWith(candidate.prefix())
+                        && comment.text().endsWith(candidate.suffix())) {
+                    return candidate.id();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int parseInteger(String text, int start, int end) {
+        try {
+            return Integer.parseInt(text, start, end, 10);
+        } catch (NumberFormatException e) {
+            // fails again, with the message parsing the number on its own gives
+            return Integer.parseInt(text.substring(start, end));
+        }
+    }
+
+    private <T extends Named> T define(T node) {
+        definitions.put(definitionId(node.getClass(), node.name(), ""), node);
+        return node;
+    }
+
+    /**
+     * Registers a variable resolver or comment function, indexed by identity so {@link #definitionId(Object)} finds the
+     * registrations a node could have been made from without looking at the others.
+     */
+    private void define(Class<?> type, String prefix, String suffix, Object definition) {
+        String id = definitionId(type, prefix, suffix);
+        Object replaced = definitions.put(id, definition);
+        if (replaced != null && affixes.containsKey(replaced)) {
+            affixes.get(replaced).removeIf(candidate -> candidate.id().equals(id));
+        }
+        affixes.computeIfAbsent(definition, ignored -> new ArrayList<>()).add(new Affixes(id, type, prefix, suffix));
+    }
+
+    private static String definitionId(Class<?> type, String prefix, String suffix) {
+        return type.getSimpleName() + '\0' + prefix + '\0' + suffix;
+    }
+
+    private record Affixes(String id, Class<?> type, String prefix, String suffix) {
     }
 }
@@ -4,9 +4,13 @@ import org.formula.Resolvable;
 import org.formula.ResolvedValue;
 import org.formula.context.DataContext;
 
-public record Variable(String key, VariableResolver variableResolver) implements Node {
+public record Variable(String key, String name, VariableResolver variableResolver) implements Node {
+
+    public Variable(String key, VariableResolver variableResolver) {
+        this(key, key, variableResolver);
+    }
 
     public ResolvedValue get(DataContext context) {
-        return variableResolver.resolve(context, key);
+        return variableResolver.resolve(context, name);
     }
 }
@@ -4,5 +4,22 @@ import org.formula.ResolvedValue;
 import org.formula.context.DataContext;
 
 public interface VariableResolver {
+
+    /**
+     * Returns a resolver that looks keys up with {@link DataContext#get(String)}, or with
+     * {@link DataContext#search(String)} if they contain a wildcard.
+     */
+    static VariableResolver lookup() {
+        return LookupVariableResolver.INSTANCE;
+    }
+
     ResolvedValue resolve(DataContext context, String key);
+
+    /**
+     * Returns whether resolving {@code key} is the same as {@link DataContext#get(String)}, so that a formula bound
+     * to a {@link org.formula.context.SymbolTable} can read it by id instead.
+     */
+    default boolean isLookup(String key) {
+        return false;
+    }
 }
@@ -23,6 +23,10 @@ public class AnyOfTokenMatcher implements TokenMatcher {
         return false;
     }
 
+    char[] allowed() {
+        return allowed;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
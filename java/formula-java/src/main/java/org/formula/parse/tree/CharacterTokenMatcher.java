@@ -12,6 +12,10 @@ public class CharacterTokenMatcher implements TokenMatcher {
         return c == character;
     }
 
+    char character() {
+        return character;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
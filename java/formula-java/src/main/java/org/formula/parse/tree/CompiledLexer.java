@@ -0,0 +1,424 @@
+package org.formula.parse.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link TokenTree} compiled into a table-driven DFA.
+ * <p>
+ * Characters are first mapped to character classes (characters that every matcher in the tree treats the same way),
+ * so each state only needs one transition per class. The DFA states are ordered lists of the node positions the tree
+ * walk could be at, built up front by subset construction. Scanning a token keeps only the longest match seen so
+ * far; matches of the same length are won by whichever was added to the tree first.
+ * <p>
+ * Tokens that need to look ahead of the current character (the body of a literal) cannot be matched by the DFA, and
+ * {@link #match} reports them as {@link #UNSUPPORTED} so that the tree can be walked instead.
+ */
+final class CompiledLexer<T> {
+    static final long NO_MATCH = -1;
+    static final long UNSUPPORTED = -2;
+
+    private static final int MAX_STATES = 4096;
+    private static final int DEAD = -1;
+    private static final int FALLBACK = -2;
+
+    private static final int ENTER = 0;
+    private static final int REPEAT = 1;
+    private static final int ACCEPT = 2;
+
+    private final char[][] classBlocks;
+    private final int stride;
+    private final int[] transitions;
+    private final int[] accepts;
+    private final List<MappableNode<T>> nodes;
+
+    /**
+     * Compiles the tree under the given root, or returns null if it has too many states.
+     */
+    static <T> CompiledLexer<T> compile(RootNode<T> root) {
+        return new Builder<>(root).build();
+    }
+
+    /**
+     * Finds the longest token starting at the given index. A match is returned as the end index in the upper 32
+     * bits and the matched node in the lower 32 bits.
+     */
+    long match(String text, int startIndex) {
+        int state = 0;
+        int endIndex = -1;
+        int node = -1;
+        for (int i = startIndex; ; i++) {
+            boolean endOfText = i >= text.length();
+            int index = state * stride + (endOfText ? stride - 1 : classOf(text.charAt(i)));
+            int next = transitions[index];
+            if (next == FALLBACK) {
+                return UNSUPPORTED;
+            }
+            if (accepts[index] >= 0) {
+                endIndex = i;
+                node = accepts[index];
+            }
+            if (next == DEAD || endOfText) {
+                break;
+            }
+            state = next;
+        }
+        return endIndex > startIndex ? ((long) endIndex << 32) | node : NO_MATCH;
+    }
+
+    T token(String text, int startIndex, long match) {
+        return nodes.get((int) match).mapper().map(text, startIndex, endIndex(match));
+    }
+
+    static int endIndex(long match) {
+        return (int) (match >>> 32);
+    }
+
+    private int classOf(char c) {
+        return classBlocks[c >>> 8][c & 0xFF];
+    }
+
+    private CompiledLexer(char[][] classBlocks, int classCount, int[] transitions, int[] accepts,
+            List<MappableNode<T>> nodes) {
+        this.classBlocks = classBlocks;
+        this.stride = classCount + 1;
+        this.transitions = transitions;
+        this.accepts = accepts;
+        this.nodes = nodes;
+    }
+
+    private static class Builder<T> {
+        private static final int MATCHER_NODE = 0;
+        private static final int REPEATING_NODE = 1;
+        private static final int OTHER_NODE = 2;
+
+        private final RootNode<T> root;
+        private final List<Node<T>> nodes = new ArrayList<>();
+        private final Map<Node<T>, Integer> nodeIds = new IdentityHashMap<>();
+        private final Map<TokenMatcher, Integer> matcherIds = new LinkedHashMap<>();
+        private int[] nodeKinds;
+        private int[][] nodeChildren;
+        private int[] nodeMatchers;
+        private int[] minLengths;
+        private int[] maxLengths;
+        private boolean[] mapped;
+        private boolean[][] classMatches;
+        private int classCount;
+
+        Builder(RootNode<T> root) {
+            this.root = root;
+        }
+
+        CompiledLexer<T> build() {
+            collectNodes(root);
+            indexNodes();
+            char[][] classes = buildClasses();
+            int stride = classCount + 1;
+
+            List<Threads> states = new ArrayList<>();
+            Map<Threads, Integer> stateIds = new HashMap<>();
+            Threads start = new Threads();
+            for (int child : childIds(root)) {
+                start.add(thread(ENTER, child, 0));
+            }
+            states.add(start);
+            stateIds.put(start, 0);
+
+            List<int[]> transitions = new ArrayList<>();
+            List<int[]> accepts = new ArrayList<>();
+            for (int state = 0; state < states.size(); state++) {
+                int[] stateTransitions = new int[stride];
+                int[] stateAccepts = new int[stride];
+                Threads threads = states.get(state);
+                for (int cls = 0; cls < stride; cls++) {
+                    Step step = new Step(cls);
+                    for (int i = 0; i < threads.size; i++) {
+                        step.process(threads.threads[i]);
+                    }
+                    stateAccepts[cls] = step.accept;
+                    if (step.fallback) {
+                        stateTransitions[cls] = FALLBACK;
+                    } else if (step.next.size == 0) {
+                        stateTransitions[cls] = DEAD;
+                    } else {
+                        Integer nextId = stateIds.get(step.next);
+                        if (nextId == null) {
+                            if (states.size() >= MAX_STATES) {
+                                return null;
+                            }
+                            nextId = states.size();
+                            states.add(step.next);
+                            stateIds.put(step.next, nextId);
+                        }
+                        stateTransitions[cls] = nextId;
+                    }
+                }
+                transitions.add(stateTransitions);
+                accepts.add(stateAccepts);
+            }
+
+            List<MappableNode<T>> mappableNodes = new ArrayList<>();
+            for (Node<T> node : nodes) {
+                mappableNodes.add(node instanceof MappableNode<T> mappable ? mappable : null);
+            }
+            return new CompiledLexer<>(classes, classCount, flatten(transitions, stride),
+                    flatten(accepts, stride), mappableNodes);
+        }
+
+        private void collectNodes(Node<T> node) {
+            if (node.children == null) {
+                return;
+            }
+            for (Node<T> child : node.children) {
+                if (!nodeIds.containsKey(child)) {
+                    nodeIds.put(child, nodes.size());
+                    nodes.add(child);
+                    collectNodes(child);
+                }
+            }
+        }
+
+        private void indexNodes() {
+            int size = nodes.size();
+            nodeKinds = new int[size];
+            nodeChildren = new int[size][];
+            nodeMatchers = new int[size];
+            minLengths = new int[size];
+            maxLengths = new int[size];
+            mapped = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                Node<T> node = nodes.get(i);
+                nodeChildren[i] = childIds(node);
+                nodeMatchers[i] = -1;
+                if (node.getClass() == MatcherNode.class || node.getClass() == RepeatingNode.class) {
+                    MatcherNode<T> matcherNode = (MatcherNode<T>) node;
+                    nodeMatchers[i] = matcherIds.computeIfAbsent(matcherNode.matcher, m -> matcherIds.size());
+                    mapped[i] = matcherNode.mapper() != null;
+                    nodeKinds[i] = MATCHER_NODE;
+                    if (node instanceof RepeatingNode<T> repeatingNode) {
+                        nodeKinds[i] = REPEATING_NODE;
+                        minLengths[i] = repeatingNode.minLength();
+                        maxLengths[i] = repeatingNode.maxLength();
+                    }
+                } else {
+                    nodeKinds[i] = OTHER_NODE;
+                }
+            }
+        }
+
+        private int[] childIds(Node<T> node) {
+            if (node.children == null) {
+                return new int[0];
+            }
+            return node.children.stream().mapToInt(nodeIds::get).toArray();
+        }
+
+        /**
+         * Splits all characters into classes that no matcher can tell apart, by refining the partition with the set
+         * of characters each matcher accepts. The class table is split into blocks of 256 characters, and the blocks
+         * no matcher mentions share one array.
+         */
+        private char[][] buildClasses() {
+            int[] unmatched = new int[256];
+            int[][] blocks = new int[256][];
+            Arrays.fill(blocks, unmatched);
+            int count = 1;
+            for (TokenMatcher matcher : matcherIds.keySet()) {
+                int[] split = new int[count];
+                Arrays.fill(split, -1);
+                int splitFrom = count;
+                for (char c : matchingCharacters(matcher)) {
+                    int[] block = blocks[c >>> 8];
+                    if (block == unmatched) {
+                        block = unmatched.clone();
+                        blocks[c >>> 8] = block;
+                    }
+                    int current = block[c & 0xFF];
+                    if (current >= splitFrom) {
+                        continue;
+                    }
+                    if (split[current] < 0) {
+                        split[current] = count++;
+                    }
+                    block[c & 0xFF] = split[current];
+                }
+            }
+
+            // splitting off every character of a class leaves it empty, so renumber the classes that are left
+            int[] renumbered = new int[count];
+            Arrays.fill(renumbered, -1);
+            List<Character> representatives = new ArrayList<>();
+            Map<int[], char[]> converted = new IdentityHashMap<>();
+            char[][] classBlocks = new char[256][];
+            for (int b = 0; b < 256; b++) {
+                char[] classBlock = converted.get(blocks[b]);
+                if (classBlock == null) {
+                    classBlock = new char[256];
+                    for (int i = 0; i < 256; i++) {
+                        int cls = blocks[b][i];
+                        if (renumbered[cls] < 0) {
+                            renumbered[cls] = representatives.size();
+                            representatives.add((char) (b << 8 | i));
+                        }
+                        classBlock[i] = (char) renumbered[cls];
+                    }
+                    converted.put(blocks[b], classBlock);
+                }
+                classBlocks[b] = classBlock;
+            }
+            classCount = representatives.size();
+
+            classMatches = new boolean[matcherIds.size()][classCount];
+            for (Map.Entry<TokenMatcher, Integer> matcher : matcherIds.entrySet()) {
+                for (int cls = 0; cls < classCount; cls++) {
+                    classMatches[matcher.getValue()][cls] = matcher.getKey().matches(representatives.get(cls));
+                }
+            }
+            return classBlocks;
+        }
+
+        private static char[] matchingCharacters(TokenMatcher matcher) {
+            if (matcher instanceof CharacterTokenMatcher characterMatcher) {
+                return new char[] { characterMatcher.character() };
+            }
+            if (matcher instanceof AnyOfTokenMatcher anyOfMatcher) {
+                return anyOfMatcher.allowed();
+            }
+            StringBuilder matching = new StringBuilder();
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                if (matcher.matches((char) c)) {
+                    matching.append((char) c);
+                }
+            }
+            return matching.toString().toCharArray();
+        }
+
+        private static int[] flatten(List<int[]> rows, int stride) {
+            int[] flat = new int[rows.size() * stride];
+            for (int i = 0; i < rows.size(); i++) {
+                System.arraycopy(rows.get(i), 0, flat, i * stride, stride);
+            }
+            return flat;
+        }
+
+        private static long thread(int kind, int node, int count) {
+            return ((long) node << 32) | ((long) kind << 30) | count;
+        }
+
+        /**
+         * Works out where every thread of a state goes on one character class, keeping them in the order the tree
+         * walk would visit them.
+         */
+        private class Step {
+            private final int cls;
+            private final Threads next = new Threads();
+            private int accept = -1;
+            private boolean fallback = false;
+
+            Step(int cls) {
+                this.cls = cls;
+            }
+
+            void process(long thread) {
+                int node = (int) (thread >>> 32);
+                int kind = (int) (thread >>> 30) & 0x3;
+                int count = (int) (thread & 0x3FFFFFFF);
+                switch (kind) {
+                    case ENTER -> enter(node);
+                    case REPEAT -> repeat(node, count);
+                    case ACCEPT -> accept(node);
+                    default -> throw new IllegalStateException("Unknown thread kind: " + kind);
+                }
+            }
+
+            private void enter(int node) {
+                switch (nodeKinds[node]) {
+                    case MATCHER_NODE -> {
+                        if (!matches(node)) {
+                            return;
+                        }
+                        for (int child : nodeChildren[node]) {
+                            next.add(thread(ENTER, child, 0));
+                        }
+                        if (mapped[node]) {
+                            next.add(thread(ACCEPT, node, 0));
+                        }
+                    }
+                    case REPEATING_NODE -> repeat(node, 0);
+                    default -> fallback = true;
+                }
+            }
+
+            private void repeat(int node, int count) {
+                if (count < maxLengths[node] && matches(node)) {
+                    int nextCount = count + 1;
+                    if (maxLengths[node] == Integer.MAX_VALUE) {
+                        // past the minimum length every count behaves the same
+                        nextCount = Math.min(nextCount, minLengths[node]);
+                    }
+                    next.add(thread(REPEAT, node, nextCount));
+                    return;
+                }
+                if (count < minLengths[node]) {
+                    return;
+                }
+                for (int child : nodeChildren[node]) {
+                    enter(child);
+                }
+                if (mapped[node]) {
+                    accept(node);
+                }
+            }
+
+            private void accept(int node) {
+                if (accept < 0) {
+                    accept = node;
+                }
+            }
+
+            private boolean matches(int node) {
+                return cls < classCount && classMatches[nodeMatchers[node]][cls];
+            }
+        }
+    }
+
+    /**
+     * The threads of a DFA state, in priority order and without duplicates.
+     */
+    private static final class Threads {
+        private long[] threads = new long[4];
+        private int size = 0;
+
+        void add(long thread) {
+            for (int i = 0; i < size; i++) {
+                if (threads[i] == thread) {
+                    return;
+                }
+            }
+            if (size == threads.length) {
+                threads = Arrays.copyOf(threads, size * 2);
+            }
+            threads[size++] = thread;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Threads other
+                    && Arrays.equals(threads, 0, size, other.threads, 0, other.size);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 1;
+            for (int i = 0; i < size; i++) {
+                hash = 31 * hash + Long.hashCode(threads[i]);
+            }
+            return hash;
+        }
+    }
+}
@@ -55,6 +55,14 @@ public class RepeatingNode<T> extends MatcherNode<T> {
                 && Objects.equals(maxLength, otherCasted.maxLength);
     }
 
+    int minLength() {
+        return minLength;
+    }
+
+    int maxLength() {
+        return maxLength;
+    }
+
     private int calculateMaxLength(String text, int currentIndex) {
         int maxTextLength = text.length() - currentIndex;
         return Math.min(this.maxLength, maxTextLength);
@@ -2,5 +2,20 @@ package org.formula.parse.tree;
 
 @FunctionalInterface
 public interface TokenMapper<T> {
+
+    /**
+     * Returns a mapper that is given the range of the token instead of a copy of it.
+     */
+    static <T> TokenMapper<T> range(TokenRangeMapper<T> mapper) {
+        return mapper;
+    }
+
     T map(String token);
-}
\ No newline at end of file
+
+    /**
+     * Maps the token between {@code startIndex} and {@code endIndex} of {@code text}.
+     */
+    default T map(String text, int startIndex, int endIndex) {
+        return map(text.substring(startIndex, endIndex));
+    }
+}
@@ -2,7 +2,6 @@ package org.formula.parse.tree;
 
 public record TokenMatch<T>(String text, int startIndex, int endIndex, TokenMapper<T> mapper) {
     T get() {
-        return mapper.map(text
-                .substring(startIndex, endIndex));
+        return mapper.map(text, startIndex, endIndex);
     }
-}
\ No newline at end of file
+}
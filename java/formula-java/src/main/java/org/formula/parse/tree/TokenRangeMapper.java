@@ -0,0 +1,17 @@
+package org.formula.parse.tree;
+
+/**
+ * A {@link TokenMapper} that is given the whole text and the range of the token in it, rather than the token, so it
+ * only allocates what it keeps.
+ */
+@FunctionalInterface
+public interface TokenRangeMapper<T> extends TokenMapper<T> {
+
+    @Override
+    T map(String text, int startIndex, int endIndex);
+
+    @Override
+    default T map(String token) {
+        return map(token, 0, token.length());
+    }
+}
@@ -7,19 +7,25 @@ import java.util.List;
 
 public class TokenTree<T> {
     private final RootNode<T> root = new RootNode<>();
+    private volatile CompiledLexer<T> lexer = null;
+    private volatile boolean lexerUnavailable = false;
 
     public static <T> TokenTree<T> create() {
         return new TokenTree<>();
     }
 
     public TokenTree<T> ignoreWhitespaces() {
-        return add(NodeExpression.anyOf(BLANK_CHARACTERS), c -> null);
+        return add(NodeExpression.anyOf(BLANK_CHARACTERS), TokenMapper.range((text, start, end) -> null));
     }
 
+    /**
+     * The mapper is given {@code allowed} itself, so matching the term does not copy it out of the text.
+     */
     public TokenTree<T> add(CharSequence allowed, TokenMapper<T> mapper) {
+        String token = allowed.toString();
         return addBranch(
             NodeExpression.term(allowed),
-            mapper);
+            mapper instanceof TokenRangeMapper<T> ? mapper : TokenMapper.range((text, start, end) -> mapper.map(token)));
     }
 
     public TokenTree<T> add(NodeExpression expression, TokenMapper<T> mapper) {
@@ -34,28 +40,89 @@ public class TokenTree<T> {
                 mapper);
     }
 
+    /**
+     * Compiles the tree into a DFA now, rather than on the first parse after it was last changed.
+     */
+    public TokenTree<T> compile() {
+        lexer();
+        return this;
+    }
+
     public List<T> parse(String text) {
+        CompiledLexer<T> lexer = lexer();
         List<T> tokens = new ArrayList<>();
-        for (int i = 0; i < text.length(); i++) {
-            List<TokenMatch<T>> matches = new ArrayList<>();
-            root.walk(text, i, matches);
-            if (!matches.isEmpty()) {
-                var match = matches.get(0);
-                var token = match.get();
-                if (token != null) {
-                    tokens.add(token);
+        int i = 0;
+        while (i < text.length()) {
+            long match = lexer != null ? lexer.match(text, i) : CompiledLexer.UNSUPPORTED;
+            T token;
+            int endIndex;
+            if (match == CompiledLexer.UNSUPPORTED) {
+                TokenMatch<T> walked = walk(text, i);
+                if (walked == null) {
+                    throw unexpectedCharacter(text, i);
                 }
-                i = match.endIndex() - 1;
+                token = walked.get();
+                endIndex = walked.endIndex();
+            } else if (match == CompiledLexer.NO_MATCH) {
+                throw unexpectedCharacter(text, i);
             } else {
-                throw new ParseException(
-                        generateParseErrorMessage(i, text, "did not expect character: '" + text.charAt(i) + "'"),
-                        text, i);
+                token = lexer.token(text, i, match);
+                endIndex = CompiledLexer.endIndex(match);
+            }
+            if (token != null) {
+                tokens.add(token);
             }
+            i = endIndex;
         }
         return tokens;
     }
 
-    private TokenTree<T> addBranch(NodeExpression expression, TokenMapper<T> mapper) {
+    /**
+     * Walks every branch of the tree from the given index, for tokens the compiled lexer cannot match.
+     */
+    private TokenMatch<T> walk(String text, int startIndex) {
+        List<TokenMatch<T>> matches = new ArrayList<>();
+        root.walk(text, startIndex, matches);
+        TokenMatch<T> longest = null;
+        for (TokenMatch<T> match : matches) {
+            if (match.endIndex() > startIndex && (longest == null || match.endIndex() > longest.endIndex())) {
+                longest = match;
+            }
+        }
+        return longest;
+    }
+
+    private CompiledLexer<T> lexer() {
+        CompiledLexer<T> current = lexer;
+        if (current == null && !lexerUnavailable) {
+            current = compileLexer();
+        }
+        return current;
+    }
+
+    /**
+     * Compiles under a lock, so threads that start parsing together wait for one compilation instead of each
+     * running their own.
+     */
+    private synchronized CompiledLexer<T> compileLexer() {
+        CompiledLexer<T> current = lexer;
+        if (current == null && !lexerUnavailable) {
+            current = CompiledLexer.compile(root);
+            lexerUnavailable = current == null;
+            lexer = current;
+        }
+        return current;
+    }
+
+    private ParseException unexpectedCharacter(String text, int index) {
+        return new ParseException(
+                generateParseErrorMessage(index, text, "did not expect character: '" + text.charAt(index) + "'"),
+                text, index);
+    }
+
+    private synchronized TokenTree<T> addBranch(NodeExpression expression, TokenMapper<T> mapper) {
+        lexer = null;
+        lexerUnavailable = false;
         Node<T> node = expression.chainTo(root);
 
         MatcherNode<T> matcherNode = (MatcherNode<T>) node;
@@ -0,0 +1,44 @@
+package org.formula.util;
+
+public final class Decimals {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT = 1L << 53;
+
+    /**
+     * Parses the digits, with at most one decimal point, between {@code start} and {@code end} of {@code text}.
+     * <p>
+     * When the digits and the power of ten they are divided by are both exactly representable as doubles, the
+     * division is correctly rounded, so the result is the same as {@link Double#parseDouble(String)}'s without
+     * copying the digits out. Anything else is handed to {@link Double#parseDouble(String)}.
+     */
+    public static double parse(CharSequence text, int start, int end) {
+        long digits = 0;
+        int count = 0;
+        int scale = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || digits >= MAX_EXACT / 10) {
+                return Double.parseDouble(text.subSequence(start, end).toString());
+            }
+            digits = digits * 10 + (c - '0');
+            count++;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (count == 0 || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(text.subSequence(start, end).toString());
+        }
+        return scale <= 0 ? digits : digits / POWERS_OF_TEN[scale];
+    }
+
+    private Decimals() {
+    }
+}
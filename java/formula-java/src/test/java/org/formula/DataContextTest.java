@@ -1,12 +1,37 @@
 package org.formula;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.formula.parse.assertions.ResolvedValueAssertions.assertResolvedValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
 import java.util.stream.Stream;
+import org.formula.context.DataContext;
+import org.formula.context.DependencyTrackingDataContext;
+import org.formula.context.IndexedDataContext;
 import org.formula.context.MutableDataContext;
+import org.formula.context.PersistentDataContext;
+import org.formula.context.SymbolTable;
+import org.formula.parse.shuntingyard.ShuntingYard;
 import org.formula.test.DataContextAction;
 import org.formula.test.DataContextTestCase;
 import org.formula.test.TestCaseLoader;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestFactory;
 
 class DataContextTest {
@@ -18,8 +43,465 @@ class DataContextTest {
                 .map(testCase -> DynamicTest.dynamicTest(testCase.name(), () -> validateTestCase(testCase)));
     }
 
+    @TestFactory
+    @DisplayName("data-driven test cases (memoizing)")
+    Stream<DynamicTest> memoizingDataDrivenTestCases() {
+        return TestCaseLoader.load(DataContextTestCase.class, "data-context-test-cases.yml").stream()
+                .map(testCase -> DynamicTest.dynamicTest(testCase.name(),
+                        () -> validateTestCase(testCase, MutableDataContext.createMemoizing())));
+    }
+
+    @TestFactory
+    @DisplayName("data-driven test cases (concurrent)")
+    Stream<DynamicTest> concurrentDataDrivenTestCases() {
+        return TestCaseLoader.load(DataContextTestCase.class, "data-context-test-cases.yml").stream()
+                .map(testCase -> DynamicTest.dynamicTest(testCase.name(),
+                        () -> validateTestCase(testCase, MutableDataContext.createConcurrent())));
+    }
+
+    @TestFactory
+    @DisplayName("data-driven test cases (persistent)")
+    Stream<DynamicTest> persistentDataDrivenTestCases() {
+        return TestCaseLoader.load(DataContextTestCase.class, "data-context-test-cases.yml").stream()
+                .map(testCase -> DynamicTest.dynamicTest(testCase.name(),
+                        () -> validateTestCase(testCase, PersistentDataContext.builder())));
+    }
+
+    @TestFactory
+    @DisplayName("data-driven test cases (overlay)")
+    Stream<DynamicTest> overlayDataDrivenTestCases() {
+        return TestCaseLoader.load(DataContextTestCase.class, "data-context-test-cases.yml").stream()
+                .map(testCase -> DynamicTest.dynamicTest(testCase.name(),
+                        () -> validateTestCase(testCase, MutableDataContext.createOverlay(MutableDataContext.create()))));
+    }
+
+    @Test
+    void searchReturnsValuesInKeyOrder() {
+        for (MutableDataContext empty : List.of(MutableDataContext.create(),
+                IndexedDataContext.create(SymbolTable.create()), PersistentDataContext.builder())) {
+            MutableDataContext context = empty
+                    .set("key_3", 3)
+                    .set("other", 0)
+                    .set("key_1", 1)
+                    .set("key_2", 2)
+                    .set("key", 4);
+            assertThat(context.search("key_*").map(ResolvedValue::asNumber)).containsExactly(1, 2, 3);
+            assertThat(context.search("*_2").map(ResolvedValue::asNumber)).containsExactly(2);
+            assertThat(context.search("k*_*").map(ResolvedValue::asNumber)).containsExactly(1, 2, 3);
+            assertThat(context.search("key*").map(ResolvedValue::asNumber)).containsExactly(4, 1, 2, 3);
+            assertThat(context.search("missing*")).isEmpty();
+        }
+    }
+
+    @Test
+    void memoizingInvalidatesDependents() {
+        MutableDataContext context = MutableDataContext.createMemoizing()
+                .set("a", 1)
+                .set("b", Formula.parse("@a + 1"))
+                .set("c", Formula.parse("@b * 2"));
+        assertResolvedValue(context.get("c")).hasValue(4);
+
+        context.set("a", 5);
+        assertResolvedValue(context.get("c")).hasValue(12);
+
+        context.push("a", ResolvedValue.of(7));
+        assertResolvedValue(context.get("c")).hasValue(16);
+    }
+
+    @Test
+    void memoizingInvalidatesMissingKeys() {
+        MutableDataContext context = MutableDataContext.createMemoizing()
+                .set("b", Formula.parse("@a + 1"));
+        assertResolvedValue(context.get("b")).hasValue(1);
+
+        context.set("a", 2);
+        assertResolvedValue(context.get("b")).hasValue(3);
+    }
+
+    @Test
+    void memoizingInvalidatesWildcardSearches() {
+        MutableDataContext context = MutableDataContext.createMemoizing()
+                .set("key_1", 1)
+                .set("key_2", 2)
+                .set("total", Formula.parse("sum(@key_*)"));
+        assertResolvedValue(context.get("total")).hasValue(3);
+
+        context.set("key_3", 3);
+        assertResolvedValue(context.get("total")).hasValue(6);
+    }
+
+    @Test
+    void memoizingDetectsCircularReferences() {
+        MutableDataContext context = MutableDataContext.createMemoizing()
+                .set("a", Formula.parse("@b"))
+                .set("b", Formula.parse("@a"));
+        assertThatThrownBy(() -> context.get("a"))
+                .isInstanceOf(ResolveException.class);
+    }
+
+    @TestFactory
+    @DisplayName("data-driven test cases (dependency tracking)")
+    Stream<DynamicTest> dependencyTrackingDataDrivenTestCases() {
+        return TestCaseLoader.load(DataContextTestCase.class, "data-context-test-cases.yml").stream()
+                .map(testCase -> DynamicTest.dynamicTest(testCase.name(),
+                        () -> validateTestCase(testCase, MutableDataContext.createDependencyTracking())));
+    }
+
+    @TestFactory
+    @DisplayName("data-driven test cases (indexed)")
+    Stream<DynamicTest> indexedDataDrivenTestCases() {
+        return TestCaseLoader.load(DataContextTestCase.class, "data-context-test-cases.yml").stream()
+                .map(testCase -> DynamicTest.dynamicTest(testCase.name(),
+                        () -> validateTestCase(testCase, IndexedDataContext.create(SymbolTable.create()))));
+    }
+
+    @Test
+    void boundFormulasReadIndexedContextsById() {
+        SymbolTable symbols = SymbolTable.of("b");
+        ShuntingYard formula = ((ShuntingYard) Formula.parse("@a * 2 + @b + @a + sum(@c*)")).bind(symbols);
+        assertThat(symbols.id("a")).isEqualTo(1);
+        assertThat(symbols.id("c*")).isEqualTo(SymbolTable.NO_ID);
+
+        IndexedDataContext context = IndexedDataContext.create(symbols)
+                .set(symbols.id("a"), ResolvedValue.of(3))
+                .set(symbols.id("b"), ResolvedValue.of(4));
+        context.set("c1", 10).set("c2", 20);
+        assertResolvedValue(formula, context).hasValue(43);
+        assertThat(context.get("a")).isEqualTo(ResolvedValue.of(3));
+
+        IndexedDataContext other = IndexedDataContext.create(SymbolTable.of("c1", "a", "b"));
+        other.set("a", 1).set("b", 2);
+        assertResolvedValue(formula, other).hasValue(5);
+        assertResolvedValue(formula, MutableDataContext.create().set("a", 1).set("c", 5)).hasValue(8);
+    }
+
+    @Test
+    void formulaDependencies() {
+        assertThat(Formula.parse("@a + @{b.c} * sum(@d*)").dependencies())
+                .containsExactly("a", "b.c", "d*");
+        assertThat(Resolvable.concat(Formula.parse("@a"), Resolvable.just(1), Formula.parse("@b")).dependencies())
+                .containsExactly("a", "b");
+        assertThat(Resolvable.just(1).dependencies()).isEmpty();
+    }
+
+    @Test
+    void dependencyTrackingRecomputesDependents() {
+        DependencyTrackingDataContext context = MutableDataContext.createDependencyTracking();
+        context.set("a", 1)
+                .set("b", Formula.parse("@a + 1"))
+                .set("c", Formula.parse("@b * 2"))
+                .set("d", Formula.parse("@x"));
+        List<Map<String, ResolvedValue>> changes = new ArrayList<>();
+        context.addListener(changes::add);
+
+        context.set("a", 5);
+        assertResolvedValue(context.get("c")).hasValue(12);
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0)).containsOnlyKeys("a", "b", "c");
+        assertResolvedValue(changes.get(0).get("c")).hasValue(12);
+
+        context.push("a", ResolvedValue.of(7));
+        assertResolvedValue(context.get("c")).hasValue(16);
+        assertThat(changes.get(1)).containsOnlyKeys("a", "b", "c");
+        assertThat(context.dependentsOf("a")).containsExactly("b");
+    }
+
+    @Test
+    void dependencyTrackingStopsAtUnchangedValues() {
+        DependencyTrackingDataContext context = MutableDataContext.createDependencyTracking();
+        context.set("a", 1)
+                .set("b", Formula.parse("@a > 0"))
+                .set("c", Formula.parse("if(@b; 'yes'; 'no')"));
+        List<Map<String, ResolvedValue>> changes = new ArrayList<>();
+        context.addListener(changes::add);
+
+        context.set("a", 2);
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0)).containsOnlyKeys("a");
+
+        context.set("a", 2);
+        assertThat(changes).hasSize(1);
+
+        context.set("a", -1);
+        assertThat(changes.get(1)).containsOnlyKeys("a", "b", "c");
+        assertResolvedValue(context.get("c")).hasValue("no");
+    }
+
+    @Test
+    void dependencyTrackingRecomputesWildcardSearches() {
+        DependencyTrackingDataContext context = MutableDataContext.createDependencyTracking();
+        context.set("key_1", 1)
+                .set("key_2", 2)
+                .set("total", Formula.parse("sum(@key_*)"));
+        List<Map<String, ResolvedValue>> changes = new ArrayList<>();
+        context.addListener(changes::add);
+
+        context.set("key_3", 3);
+        assertResolvedValue(context.get("total")).hasValue(6);
+        assertThat(changes.get(0)).containsOnlyKeys("key_3", "total");
+    }
+
+    @Test
+    void dependencyTrackingDetectsCircularReferences() {
+        DependencyTrackingDataContext context = MutableDataContext.createDependencyTracking();
+        context.set("a", Formula.parse("@b"))
+                .set("b", Formula.parse("@a"));
+        assertThatThrownBy(() -> context.get("a"))
+                .isInstanceOf(ResolveException.class);
+
+        context.set("b", 1);
+        assertResolvedValue(context.get("a")).hasValue(1);
+    }
+
+    @Test
+    void persistentContextForksLeaveTheBaseUnchanged() {
+        PersistentDataContext base = PersistentDataContext.builder()
+                .set("price", 10)
+                .set("quantity", 2)
+                .set("total", Formula.parse("@price * @quantity"))
+                .build();
+        PersistentDataContext session = base.with("quantity", 5);
+
+        assertResolvedValue(base.get("total")).hasValue(20);
+        assertResolvedValue(session.get("total")).hasValue(50);
+        assertThat(session.size()).isEqualTo(3);
+        assertThat(session.without("quantity").get("quantity").hasValue()).isFalse();
+        assertThat(base.without("missing")).isSameAs(base);
+    }
+
+    @Test
+    void persistentContextMatchesHashMap() {
+        Random random = new Random(42);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentDataContext context = PersistentDataContext.empty();
+        List<PersistentDataContext> snapshots = new ArrayList<>();
+        List<Map<String, Integer>> expectedSnapshots = new ArrayList<>();
+
+        // "Aa" and "BB" share a hash code, so colliding keys are covered too
+        String[] prefixes = { "Aa", "BB", "key_" };
+        for (int i = 0; i < 5000; i++) {
+            String key = prefixes[random.nextInt(prefixes.length)] + random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                expected.remove(key);
+                context = context.without(key);
+            } else {
+                expected.put(key, i);
+                context = context.with(key, i);
+            }
+            if (i % 97 == 0) {
+                assertThat(context.search("key_*").map(ResolvedValue::asNumber)).containsExactlyElementsOf(
+                        new TreeMap<>(expected).tailMap("key_").entrySet().stream()
+                                .filter(entry -> entry.getKey().startsWith("key_"))
+                                .map(Map.Entry::getValue)
+                                .toList());
+            }
+            if (i % 1000 == 0) {
+                snapshots.add(context);
+                expectedSnapshots.add(new HashMap<>(expected));
+            }
+        }
+        snapshots.add(context);
+        expectedSnapshots.add(expected);
+
+        for (int i = 0; i < snapshots.size(); i++) {
+            PersistentDataContext snapshot = snapshots.get(i);
+            Map<String, Integer> values = expectedSnapshots.get(i);
+            assertThat(snapshot.size()).isEqualTo(values.size());
+            assertThat(snapshot.keys()).containsExactlyInAnyOrderElementsOf(values.keySet());
+            values.forEach((key, value) -> assertResolvedValue(snapshot.get(key)).hasValue(value));
+        }
+    }
+
+    @Test
+    void overlayResolvesParentFormulasAgainstItself() {
+        MutableDataContext rules = MutableDataContext.create();
+        rules.set("rate", 2)
+                .set("amount", 10)
+                .set("fee", Formula.parse("@amount * @rate"))
+                .set("item_a", 1)
+                .set("item_c", 3)
+                .set("items", Formula.parse("sum(@{item_*})"));
+        MutableDataContext request = MutableDataContext.createOverlay(rules);
+        request.set("amount", 50)
+                .set("item_b", 2)
+                .set("item_c", 30);
+
+        assertResolvedValue(request.get("fee")).hasValue(100);
+        assertResolvedValue(rules.get("fee")).hasValue(20);
+        assertResolvedValue(request.get("items")).hasValue(33);
+        assertThat(request.search("item_*").map(ResolvedValue::asNumber)).containsExactly(1, 2, 30);
+        assertThat(request.keys()).containsExactlyInAnyOrder(
+                "rate", "amount", "fee", "item_a", "item_b", "item_c", "items");
+    }
+
+    @Test
+    void nestedOverlaysSearchEveryLayer() {
+        MutableDataContext base = MutableDataContext.create().set("x_1", 1).set("x_2", 2);
+        MutableDataContext middle = MutableDataContext.createOverlay(base).set("x_3", 3);
+        MutableDataContext top = MutableDataContext.createOverlay(middle).set("x_4", 4).set("x_2", 20);
+
+        assertThat(top.search("x_*").map(ResolvedValue::asNumber)).containsExactly(1, 20, 3, 4);
+        assertResolvedValue(Formula.parse("sum(@{x_*})").resolve(top)).hasValue(28);
+        assertThat(middle.search("x_*").map(ResolvedValue::asNumber)).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void overlaysSearchIndexedParents() {
+        DataContext persistent = PersistentDataContext.builder().set("x_1", 1).set("x_3", 3).set("y_1", 9).build();
+        IndexedDataContext indexed = IndexedDataContext.create(SymbolTable.create());
+        indexed.set("x_1", 1).set("x_3", 3).set("y_1", 9);
+
+        for (DataContext parent : List.of(persistent, indexed)) {
+            MutableDataContext overlay = MutableDataContext.createOverlay(parent).set("x_2", 2).set("x_3", 30);
+            assertThat(overlay.search("x_*").map(ResolvedValue::asNumber)).containsExactly(1, 2, 30);
+        }
+    }
+
+    @Test
+    void overlayPushesDoNotChangeTheParent() {
+        MutableDataContext parent = MutableDataContext.create();
+        parent.push("list", 1);
+        parent.push("list", Resolvable.just(ResolvedValue.of(2)));
+        MutableDataContext overlay = MutableDataContext.createOverlay(parent);
+        overlay.push("list", Resolvable.just(ResolvedValue.of(3)));
+
+        assertThat(overlay.get("list").asList()).hasSize(3);
+        assertThat(parent.get("list").asList()).hasSize(2);
+        assertThat(MutableDataContext.createOverlay(DataContext.EMPTY).get("missing").hasValue()).isFalse();
+    }
+
+    @Test
+    void overlayPushesKeepTheValueOfAForeignParent() {
+        DataContext parent = new DataContext() {
+            @Override
+            public ResolvedValue get(String key) {
+                return key.equals("list") ? ResolvedValue.of(1) : ResolvedValue.none();
+            }
+
+            @Override
+            public Stream<String> keys() {
+                return Stream.of("list");
+            }
+        };
+        MutableDataContext overlay = MutableDataContext.createOverlay(parent);
+        overlay.push("list", Resolvable.just(ResolvedValue.of(2)));
+        overlay.push("other", Resolvable.just(ResolvedValue.of(3)));
+
+        assertThat(overlay.get("list").asList().stream().map(ResolvedValue::asNumber)).containsExactly(1, 2);
+        assertThat(overlay.get("other").asList().stream().map(ResolvedValue::asNumber)).containsExactly(3);
+        assertResolvedValue(parent.get("list")).hasValue(1);
+    }
+
+    @Test
+    void concurrentPushesAreNotLost() throws Exception {
+        MutableDataContext context = MutableDataContext.createConcurrent();
+        context.set("total", Formula.parse("sum(@list)"));
+
+        runConcurrently(8, thread -> {
+            for (int i = 0; i < 500; i++) {
+                if (thread % 2 == 0) {
+                    context.push("list", Resolvable.just(ResolvedValue.of(1)));
+                } else {
+                    context.push("list", 1);
+                }
+                context.get("total");
+            }
+        });
+
+        assertThat(context.get("list").asList()).hasSize(4000);
+        assertResolvedValue(context.get("total")).hasValue(4000);
+    }
+
+    @Test
+    void concurrentReadsSeeCompletedWrites() throws Exception {
+        MutableDataContext context = MutableDataContext.createConcurrent();
+        context.set("counter", 0);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        runConcurrently(4, thread -> {
+            if (thread == 0) {
+                for (int i = 1; i <= 2000; i++) {
+                    context.set("key_" + i, i);
+                    context.set("counter", i);
+                }
+                writing.set(false);
+                return;
+            }
+            int lastCounter = 0;
+            long lastCount = 0;
+            while (writing.get()) {
+                int counter = context.get("counter").asNumber();
+                List<ResolvedValue> found = context.search("key_*").toList();
+                assertThat(counter).isGreaterThanOrEqualTo(lastCounter);
+                assertThat((long) found.size()).isGreaterThanOrEqualTo(Math.max(lastCount, counter));
+                assertThat(found).allMatch(ResolvedValue::hasValue);
+                assertThat(context.keys().count()).isGreaterThanOrEqualTo(counter + 1);
+                lastCounter = counter;
+                lastCount = found.size();
+            }
+        });
+
+        assertThat(context.search("key_*")).hasSize(2000);
+    }
+
+    @Test
+    void concurrentSetAllPublishesTheBatchInOneStep() throws Exception {
+        MutableDataContext context = MutableDataContext.createConcurrent();
+        context.setAll(Map.of("first", Resolvable.just(ResolvedValue.of(0)),
+                "second", Resolvable.just(ResolvedValue.of(0))));
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        runConcurrently(4, thread -> {
+            if (thread == 0) {
+                for (int i = 1; i <= 2000; i++) {
+                    Map<String, Resolvable> batch = new LinkedHashMap<>();
+                    batch.put("first", Resolvable.just(ResolvedValue.of(i)));
+                    batch.put("key_" + i, Resolvable.just(ResolvedValue.of(i)));
+                    batch.put("second", Resolvable.just(ResolvedValue.of(i)));
+                    context.setAll(batch);
+                }
+                writing.set(false);
+                return;
+            }
+            while (writing.get()) {
+                int first = context.get("first").asNumber();
+                int second = context.get("second").asNumber();
+                assertThat(second).isGreaterThanOrEqualTo(first);
+                assertThat(context.search("key_*").count()).isGreaterThanOrEqualTo(second);
+                assertThat(context.get("first").asNumber()).isGreaterThanOrEqualTo(second);
+            }
+        });
+
+        assertThat(context.search("key_*")).hasSize(2000);
+    }
+
+    private static void runConcurrently(int threads, IntConsumer task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.accept(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private void validateTestCase(DataContextTestCase testCase) {
-        MutableDataContext context = MutableDataContext.create();
+        validateTestCase(testCase, MutableDataContext.create());
+    }
+
+    private void validateTestCase(DataContextTestCase testCase, MutableDataContext context) {
         if (testCase.data() != null) {
             testCase.data().forEach(context::set);
         }
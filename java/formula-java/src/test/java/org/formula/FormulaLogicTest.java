@@ -23,4 +23,25 @@ public class FormulaLogicTest {
         assertResolvedValue(parse("'5'==@five"), MutableDataContext.create().set("five", 5)).hasValue(true);
         assertResolvedValue(parse("'5'==@five"), MutableDataContext.create().set("five", "5")).hasValue(true);
     }
+
+    @Test
+    void andShortCircuits() {
+        var context = MutableDataContext.create().set("invalid", parse("'ABC' + 1"));
+        assertResolvedValue(parse("false AND @invalid"), context).hasValue(false);
+        assertResolvedValue(parse("true AND false AND @invalid"), context).hasValue(false);
+    }
+
+    @Test
+    void orShortCircuits() {
+        var context = MutableDataContext.create().set("invalid", parse("'ABC' + 1"));
+        assertResolvedValue(parse("true OR @invalid"), context).hasValue(true);
+        assertResolvedValue(parse("false OR (true OR @invalid)"), context).hasValue(true);
+    }
+
+    @Test
+    void ifOnlyResolvesTakenBranch() {
+        var context = MutableDataContext.create().set("invalid", parse("'ABC' + 1"));
+        assertResolvedValue(parse("if(1 < 2; 'A'; @invalid)"), context).hasValue("A");
+        assertResolvedValue(parse("if(1 > 2; @invalid; 'B')"), context).hasValue("B");
+    }
 }
@@ -66,4 +66,25 @@ public class FormulaPerformanceTest {
         assertResolvedValue(result).hasValue(depth);
         System.out.printf("Deep Resolve Average: %.2f µs%n", total / ITERATIONS * 0.001);
     }
+
+    @Test
+    void memoizingDeepResolvePerformance() {
+        final int depth = 10000;
+        var formula = Formula.parse("@step_" + depth);
+        var context = MutableDataContext.createMemoizing()
+                .set("step_1", 1);
+        for (var j = 2; j <= depth; j++) {
+            context = context.set("step_"+j, Formula.parse("@step_%d + 1".formatted(j - 1)));
+        }
+        var startTime = System.nanoTime();
+        var result = ResolvedValue.none();
+        for (var i = 0; i < ITERATIONS; i++) {
+            result = formula.resolve(context);
+        }
+        var endTime = System.nanoTime();
+        var total = endTime - startTime;
+
+        assertResolvedValue(result).hasValue(depth);
+        System.out.printf("Memoizing Deep Resolve Average: %.2f µs%n", total / ITERATIONS * 0.001);
+    }
 }
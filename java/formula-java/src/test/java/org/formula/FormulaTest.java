@@ -1,16 +1,25 @@
 package org.formula;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.formula.Formula.*;
 import static org.formula.parse.assertions.FormulaAssertions.assertFormula;
 import static org.formula.parse.assertions.ResolvedValueAssertions.assertResolvedValue;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 import net.bytebuddy.asm.Advice.Argument;
 import org.formula.context.DataContext;
 import org.formula.context.MutableDataContext;
 import org.formula.optimize.FormulaOptimizer;
+import org.formula.parse.shuntingyard.Associativity;
+import org.formula.parse.shuntingyard.NumericOperatorFunction2;
+import org.formula.parse.tree.ParseException;
 import org.formula.test.FormulaTestCase;
 import org.formula.test.OptimizeTestCase;
 import org.formula.test.TestCaseLoader;
@@ -56,4 +65,251 @@ class FormulaTest {
             assertThat(e.getMessage()).isEqualTo(testCase.expectedError());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void parseCacheReusesParsedFormulas() {
+        FormulaParser parser = FormulaParser.createDefault().cache(2);
+        Resolvable first = parser.parse("1 + 2");
+        assertThat(parser.parse("1 + 2")).isSameAs(first);
+        assertThat(parser.cacheStats()).isEqualTo(new ParseCacheStats(1, 1, 0, 1));
+        assertResolvedValue(first.resolve()).hasValue(3);
+    }
+
+    @Test
+    void parseCacheEvictsLeastRecentlyUsed() {
+        FormulaParser parser = FormulaParser.createDefault().cache(2);
+        Resolvable a = parser.parse("'a'");
+        Resolvable b = parser.parse("'b'");
+        parser.parse("'a'");
+        parser.parse("'c'");
+
+        assertThat(parser.parse("'a'")).isSameAs(a);
+        assertThat(parser.parse("'b'")).isNotSameAs(b);
+        assertThat(parser.cacheStats()).isEqualTo(new ParseCacheStats(2, 4, 2, 2));
+    }
+
+    @Test
+    void parseCacheIsDisabledByDefault() {
+        FormulaParser parser = FormulaParser.createDefault();
+        assertThat(parser.parse("1 + 2")).isNotSameAs(parser.parse("1 + 2"));
+        assertThat(parser.cacheStats()).isEqualTo(ParseCacheStats.DISABLED);
+    }
+
+    @Test
+    void parseAllParsesEachDistinctTextOnce() {
+        FormulaParser parser = FormulaParser.createDefault().cache(10);
+        Map<String, String> texts = new LinkedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            texts.put("key" + i, "@row * " + (i % 500));
+        }
+
+        ParsedFormulas parsed = parser.parseAll(texts);
+
+        assertThat(parsed.hasErrors()).isFalse();
+        assertThat(parsed.formulas().keySet()).containsExactlyElementsOf(texts.keySet());
+        assertThat(parsed.formulas().get("key600")).isSameAs(parsed.formulas().get("key100"));
+        assertThat(parser.cacheStats().misses()).isEqualTo(500);
+        assertResolvedValue(parsed.formulas().get("key5"), MutableDataContext.create().set("row", 7)).hasValue(35);
+    }
+
+    @Test
+    void parseAllCollectsParseErrors() {
+        ParsedFormulas parsed = FormulaParser.createDefault().parseAll(Stream.of(
+                Map.entry("a", "1 + 2"),
+                Map.entry("b", "@a ~"),
+                Map.entry("c", "@a * 2"),
+                Map.entry("d", "1 + 2 ~")));
+
+        assertThat(parsed.formulas()).containsOnlyKeys("a", "c");
+        assertThat(parsed.errors()).containsOnlyKeys("b", "d");
+        assertThat(parsed.errors().get("b")).isInstanceOfSatisfying(ParseException.class,
+                e -> assertThat(e.index()).isEqualTo(3));
+
+        MutableDataContext context = parsed.loadInto(MutableDataContext.create());
+        assertResolvedValue(context.get("c")).hasValue(6);
+        assertThat(context.keys()).containsExactlyInAnyOrder("a", "c");
+    }
+
+    @Test
+    void parseAllCollectsOtherParseFailures() {
+        ParsedFormulas parsed = FormulaParser.createDefault().parseAll(Map.of(
+                "a", "1 + 2",
+                "b", "99999999999",
+                "c", "@a * 2"));
+
+        assertThat(parsed.formulas()).containsOnlyKeys("a", "c");
+        assertThat(parsed.errors().get("b")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void numericExpressionsSkipBoxedOperators() {
+        int[] calls = new int[2];
+        FormulaParser parser = FormulaParser.createDefault()
+                .addCustom(p -> p.numericOperator("%", 3, Associativity.LEFT, new NumericOperatorFunction2() {
+                    @Override
+                    public double executeAsDouble(double a1, double a2) {
+                        calls[0]++;
+                        return a1 % a2;
+                    }
+
+                    @Override
+                    public ResolvedValue execute(ResolvedValue a1, ResolvedValue a2) {
+                        calls[1]++;
+                        return ResolvedValue.of(a1.asDecimal() % a2.asDecimal());
+                    }
+                }));
+        Resolvable formula = parser.parse("(@a % 4) * 2 + 1");
+
+        assertResolvedValue(formula, MutableDataContext.create().set("a", 11)).hasValue(7);
+        assertThat(calls).containsExactly(1, 0);
+
+        assertResolvedValue(formula, MutableDataContext.create()).hasValue(1);
+        assertThat(calls).containsExactly(1, 1);
+    }
+
+    @Test
+    void numericComparisonsResolveToBooleans() {
+        var context = MutableDataContext.create().set("a", 3).set("b", 5);
+        assertThat(Formula.parse("@a * 2 > @b").resolve(context)).isSameAs(ResolvedValue.TRUE);
+        assertThat(Formula.parse("(@a > @b) + 1").resolve(context).asText()).isEqualTo("1");
+    }
+
+    @Test
+    void numericExpressionsKeepMissingValueSemantics() {
+        assertThat(Formula.parse("@a + @b").resolve(MutableDataContext.create())).isSameAs(ResolvedValue.ZERO);
+        assertThatThrownBy(() -> Formula.parse("@b * @a").resolve(MutableDataContext.create().set("a", "x")))
+                .isInstanceOf(ResolveException.class)
+                .hasMessage("Cannot convert 'x' to a number");
+    }
+
+    @Test
+    void numericFallbackReadsEachVariableOnce() {
+        Map<String, Integer> reads = new HashMap<>();
+        DataContext context = new DataContext() {
+            @Override
+            public ResolvedValue get(String key) {
+                reads.merge(key, 1, Integer::sum);
+                return key.equals("b") ? ResolvedValue.none() : ResolvedValue.of(3);
+            }
+
+            @Override
+            public Stream<String> keys() {
+                return Stream.of("a", "b", "c");
+            }
+        };
+
+        assertResolvedValue(Formula.parse("@a * 2 + @b + @c").resolve(context)).hasValue(9);
+        assertThat(reads).containsExactlyInAnyOrderEntriesOf(Map.of("a", 1, "b", 1, "c", 1));
+
+        reads.clear();
+        assertResolvedValue(Formula.parse("max(@a + @b; @c + 1)").resolve(context)).hasValue(4);
+        assertThat(reads).containsExactlyInAnyOrderEntriesOf(Map.of("a", 1, "b", 1, "c", 1));
+    }
+
+    @Test
+    void constantSubexpressionsAreFoldedWhenParsed() {
+        int[] calls = new int[2];
+        FormulaParser parser = FormulaParser.createDefault()
+                .addCustom(p -> p
+                        .function("twice", (ResolvedValue a) -> {
+                            calls[0]++;
+                            return ResolvedValue.of(a.asDecimal() * 2);
+                        })
+                        .function("roll", (ResolvedValue a) -> {
+                            calls[1]++;
+                            return a;
+                        })
+                        .pure("twice"));
+        Resolvable formula = parser.parse("twice(2 ^ (1 + 1)) + roll(3) * @a");
+        assertThat(calls).containsExactly(1, 0);
+
+        var context = MutableDataContext.create().set("a", 2);
+        assertResolvedValue(formula, context).hasValue(14);
+        assertResolvedValue(formula, context).hasValue(14);
+        assertThat(calls).containsExactly(1, 2);
+        assertThat(formula.asFormula()).isEqualTo("twice(2 ^ (1 + 1)) + roll(3) * @a");
+    }
+
+    @Test
+    void commentsAreOnlyFoldedWhenPure() {
+        int[] calls = new int[2];
+        FormulaParser parser = FormulaParser.createDefault()
+                .addCustom(p -> p
+                        .comment("<", ">", (value, comment) -> {
+                            calls[0]++;
+                            return value;
+                        })
+                        .comment("{", "}", (value, comment) -> {
+                            calls[1]++;
+                            return value;
+                        })
+                        .pure("{"));
+        Resolvable formula = parser.parse("(1 + 2)<logged> + (3 + 4){cached} + 5[named]");
+        assertThat(calls).containsExactly(0, 1);
+
+        assertResolvedValue(formula.resolve()).hasValue(15);
+        assertResolvedValue(formula.resolve()).hasValue(15);
+        assertThat(calls).containsExactly(2, 1);
+    }
+
+    @Test
+    void lazyCallsWithConstantConditionsAreReduced() {
+        Resolvable formula = Formula.parse("if(1 > 2; @a; @b * 2)");
+        assertThat(formula.dependencies()).containsExactly("b");
+        assertResolvedValue(formula, MutableDataContext.create().set("b", 4)).hasValue(8);
+
+        assertThat(Formula.parse("false AND @a").dependencies()).isEmpty();
+        assertThat(Formula.parse("if(@c; 1; 2)").dependencies()).containsExactly("c");
+        assertThat(Formula.parse("true AND @a").dependencies()).containsExactly("a");
+    }
+
+    @Test
+    void integerOverflowKeepsTheNumberFormatMessage() {
+        assertThatThrownBy(() -> Formula.parse("1 + 99999999999"))
+                .isInstanceOf(NumberFormatException.class)
+                .hasMessage("For input string: \"99999999999\"");
+    }
+
+    @Test
+    void failingConstantSubexpressionsFailWhenResolved() {
+        Resolvable formula = Formula.parse("@a + 1 * 'x'");
+        assertThatThrownBy(() -> formula.resolve(MutableDataContext.create().set("a", 1)))
+                .isInstanceOf(ResolveException.class)
+                .hasMessage("Cannot convert 'x' to a number");
+    }
+
+    @Test
+    void resolveAllMatchesResolve() {
+        Resolvable formula = Formula.parse("if(@flag; (@a + 1) * 2; 'none') [note]");
+        List<DataContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            MutableDataContext context = MutableDataContext.create();
+            context.set("flag", i % 3 != 0);
+            if (i % 5 != 0) {
+                context.set("a", i);
+            }
+            contexts.add(context);
+        }
+
+        assertThat(formula.resolveAll(contexts).stream().map(ResolvedValue::asText))
+                .containsExactlyElementsOf(contexts.stream().map(context -> formula.resolve(context).asText()).toList());
+    }
+
+    @Test
+    void batchEvaluatorKeepsInputOrder() {
+        List<DataContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            contexts.add(MutableDataContext.create().set("row", i));
+        }
+        BatchEvaluator evaluator = BatchEvaluator.of(Formula.parse("@row * 2"));
+
+        List<ResolvedValue> sequential = evaluator.evaluate(contexts);
+        List<ResolvedValue> parallel = evaluator.parallel().chunkSize(16).evaluate(contexts);
+
+        assertThat(parallel).hasSize(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertResolvedValue(sequential.get(i)).hasValue(i * 2);
+            assertResolvedValue(parallel.get(i)).hasValue(i * 2);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.io.InputStreamReader;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.formula.Formula;
+import org.formula.context.DataContext;
 import org.formula.test.FormulaTestCase;
 import org.formula.test.OptimizeTestCase;
 import org.formula.test.TestCaseLoader;
@@ -26,6 +28,34 @@ public class FormulaOptimizerTest {
                 }));
     }
 
+    @TestFactory
+    @DisplayName("optimized formulas resolve like the originals")
+    Stream<DynamicTest> optimizedFormulaTestCases() {
+        return TestCaseLoader.load(FormulaTestCase.class, "formula-test-cases.yml").stream()
+                .map(testCase -> DynamicTest.dynamicTest(testCase.name(), () -> {
+                    validateOptimizedTestCase(testCase);
+                }));
+    }
+
+    private void validateOptimizedTestCase(FormulaTestCase testCase) {
+        try {
+            var formula = FormulaOptimizer.optimize(Formula.parse(testCase.formula()));
+
+            var data = testCase.data();
+            if (data == null) {
+                data = DataContext.EMPTY;
+            }
+
+            testCase.assertResult(formula.resolve(data));
+        } catch (Exception e) {
+            if (testCase.expectedError() == null) {
+                throw e;
+            }
+
+            assertThat(e.getMessage()).isEqualTo(testCase.expectedError());
+        }
+    }
+
     private void validateTestCase(OptimizeTestCase testCase) {
         var optimized = FormulaOptimizer.optimize(testCase.formula());
         assertThat(optimized).isEqualTo(testCase.expectedFormula());
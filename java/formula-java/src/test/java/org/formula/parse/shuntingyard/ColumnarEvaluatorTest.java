@@ -0,0 +1,79 @@
+package org.formula.parse.shuntingyard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Map;
+import java.util.Random;
+import org.formula.Formula;
+import org.formula.FormulaParser;
+import org.formula.Resolvable;
+import org.formula.context.MutableDataContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ColumnarEvaluatorTest {
+    private static final FormulaParser PARSER = FormulaParser.createDefault()
+            .addCustom(parser -> parser.numericOperator("%", 3, Associativity.LEFT, (a, b) -> a % b));
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "@price * @qty - @discount",
+            "abs(@price - 50) ^ 2 / (@qty + 1) > 40",
+            "-floor(@price / 3) + ceil(@discount) * @flag",
+            "(@qty % 7) <= 3",
+            "@price",
+            "12.5"
+    })
+    void matchesRowByRowResolve(String formulaText) {
+        int rows = 2500;
+        Random random = new Random(7);
+        double[] price = new double[rows];
+        int[] qty = new int[rows];
+        double[] discount = new double[rows];
+        boolean[] flag = new boolean[rows];
+        for (int i = 0; i < rows; i++) {
+            price[i] = random.nextDouble() * 100;
+            qty[i] = random.nextInt(20);
+            discount[i] = random.nextDouble() * 10;
+            flag[i] = random.nextBoolean();
+        }
+
+        Resolvable formula = PARSER.parse(formulaText);
+        double[] result = ColumnarEvaluator.compile(formula)
+                .evaluate(rows, Map.of("price", price, "qty", qty, "discount", discount, "flag", flag));
+
+        for (int i = 0; i < rows; i++) {
+            MutableDataContext row = MutableDataContext.create();
+            row.set("price", price[i]);
+            row.set("qty", qty[i]);
+            row.set("discount", discount[i]);
+            row.set("flag", flag[i]);
+            assertThat(result[i]).isEqualTo(formula.resolve(row).asDecimal());
+        }
+    }
+
+    @Test
+    void listsColumns() {
+        assertThat(ColumnarEvaluator.compile(Formula.parse("@a * @b + @a")).columns()).containsExactly("a", "b");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "@a AND @b", "'x' + 1", "max(@a; 1)", "@{item_*} + 1", "@a == 1", "@a [note]" })
+    void rejectsFormulasThatAreNotNumeric(String formulaText) {
+        Resolvable formula = Formula.parse(formulaText);
+        assertThatThrownBy(() -> ColumnarEvaluator.compile(formula))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsMissingColumns() {
+        ColumnarEvaluator evaluator = ColumnarEvaluator.compile(Formula.parse("@a + @b"));
+        assertThatThrownBy(() -> evaluator.evaluate(2, Map.of("a", new double[2])))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("No column for 'b'");
+        assertThatThrownBy(() -> evaluator.evaluate(2, Map.of("a", new double[2], "b", new long[2])))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
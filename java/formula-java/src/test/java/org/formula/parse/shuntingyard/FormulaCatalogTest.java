@@ -0,0 +1,108 @@
+package org.formula.parse.shuntingyard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.formula.FormulaParser;
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.formula.context.MutableDataContext;
+import org.formula.test.FormulaTestCase;
+import org.formula.test.TestCaseLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FormulaCatalogTest {
+    private final FormulaParser parser = FormulaParser.createDefault()
+            .addCustom(p -> p.function("twice", (ResolvedValue a) -> ResolvedValue.of(a.asNumber() * 2)));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackTheTestCaseFormulas() throws IOException {
+        List<FormulaTestCase> testCases = TestCaseLoader.load(FormulaTestCase.class, "formula-test-cases.yml");
+        Map<String, Resolvable> formulas = new LinkedHashMap<>();
+        for (FormulaTestCase testCase : testCases) {
+            try {
+                formulas.put(testCase.name(), parser.parse(testCase.formula()));
+            } catch (RuntimeException e) {
+                // formulas that do not parse are not stored
+            }
+        }
+        Path path = directory.resolve("formulas.bin");
+        parser.writeCatalog(path, formulas);
+
+        FormulaCatalog catalog = parser.openCatalog(path);
+        assertThat(catalog.size()).isEqualTo(formulas.size());
+        assertThat(catalog.keys()).containsExactlyElementsOf(formulas.keySet().stream().sorted().toList());
+        for (FormulaTestCase testCase : testCases) {
+            Resolvable expected = formulas.get(testCase.name());
+            if (expected == null) {
+                continue;
+            }
+            Resolvable actual = catalog.get(testCase.name());
+            DataContext data = testCase.data() == null ? DataContext.EMPTY : testCase.data();
+            assertThat(actual.asFormula()).isEqualTo(expected.asFormula());
+            assertThat(actual.dependencies()).isEqualTo(expected.dependencies());
+            assertThat(outcome(actual, data)).as(testCase.name()).isEqualTo(outcome(expected, data));
+            assertThat(catalog.get(testCase.name())).isSameAs(actual);
+        }
+        assertThat(catalog.get("missing")).isNull();
+    }
+
+    @Test
+    void looksUpFunctionsInTheParserItIsOpenedWith() throws IOException {
+        Path path = directory.resolve("custom.bin");
+        parser.writeCatalog(path, Map.of(
+                "custom", parser.parse("twice(@a) + 1 [named]"),
+                "blank", parser.parse(" ")));
+
+        FormulaCatalog catalog = parser.openCatalog(path);
+        assertThat(catalog.get("custom").resolve(MutableDataContext.create().set("a", 4)).asNumber()).isEqualTo(9);
+        assertThat(catalog.get("blank")).isSameAs(Resolvable.empty());
+
+        FormulaCatalog withoutFunction = FormulaParser.createDefault().openCatalog(path);
+        assertThatThrownBy(() -> withoutFunction.get("custom"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("twice");
+        assertThatThrownBy(() -> FormulaParser.createDefault().writeCatalog(path, Map.of("custom",
+                parser.parse("twice(1)"))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void readsBackOptimizedFormulas() throws IOException {
+        Path path = directory.resolve("optimized.bin");
+        ShuntingYard optimized = ((ShuntingYard) parser.parse("@a AND true")).optimized();
+        parser.writeCatalog(path, Map.of("optimized", optimized));
+
+        Resolvable actual = parser.openCatalog(path).get("optimized");
+        assertThat(actual.resolve(MutableDataContext.create().set("a", 1)).asBoolean()).isTrue();
+        assertThat(actual.resolve(MutableDataContext.create().set("a", 0)).asBoolean()).isFalse();
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path path = Files.writeString(directory.resolve("text.bin"), "not a catalog at all, just some text");
+
+        assertThatThrownBy(() -> parser.openCatalog(path))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not a formula catalog");
+    }
+
+    private static Object outcome(Resolvable formula, DataContext context) {
+        try {
+            return formula.resolve(context);
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+}
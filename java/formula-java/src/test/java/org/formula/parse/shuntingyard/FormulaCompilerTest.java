@@ -0,0 +1,102 @@
+package org.formula.parse.shuntingyard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.formula.parse.assertions.ResolvedValueAssertions.assertResolvedValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.formula.Formula;
+import org.formula.FormulaParser;
+import org.formula.NamedResolvedValue;
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.formula.context.MutableDataContext;
+import org.formula.test.FormulaTestCase;
+import org.formula.test.TestCaseLoader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+class FormulaCompilerTest {
+
+    @TestFactory
+    @DisplayName("data-driven test cases")
+    Stream<DynamicTest> dataDrivenTestCases() {
+        return TestCaseLoader.load(FormulaTestCase.class, "formula-test-cases.yml").stream()
+                .map(testCase -> DynamicTest.dynamicTest(testCase.name(), () -> validateTestCase(testCase)));
+    }
+
+    @Test
+    void compilesToHiddenClass() {
+        var formula = Formula.parse("@alpha AND (@beta OR @delta) AND @sigma AND (@omega >= 5)");
+        var compiled = FormulaCompiler.compile(formula);
+        var context = MutableDataContext.create()
+                .set("alpha", "true")
+                .set("beta", Formula.parse("!@delta"))
+                .set("delta", Formula.parse("false"))
+                .set("sigma", Formula.parse("@alpha AND @beta"))
+                .set("omega", "12");
+
+        assertThat(compiled.getClass().isHidden()).isTrue();
+        assertThat(compiled.asFormula()).isEqualTo(formula.asFormula());
+        assertThat(compiled.dependencies()).isEqualTo(formula.dependencies());
+        assertResolvedValue(compiled, context).hasValue(true);
+    }
+
+    @Test
+    void lazyOperandsRunCompiledCode() {
+        List<String> callers = new ArrayList<>();
+        FormulaParser parser = FormulaParser.createDefault()
+                .addCustom(p -> p.function("trace", (ResolvedValue a) -> {
+                    StackWalker.getInstance(StackWalker.Option.SHOW_HIDDEN_FRAMES)
+                            .forEach(frame -> callers.add(frame.getClassName()));
+                    return a;
+                }));
+        var compiled = FormulaCompiler.compile(parser.parse("@alpha AND (@beta OR if(@delta; trace(1); trace(0)))"));
+
+        for (boolean delta : new boolean[] {true, false}) {
+            var context = MutableDataContext.create()
+                    .set("alpha", true)
+                    .set("beta", false)
+                    .set("delta", delta);
+            assertResolvedValue(compiled, context).hasValue(delta);
+        }
+        assertThat(callers)
+                .anyMatch(name -> name.startsWith(FormulaCompiler.class.getPackageName() + ".CompiledOperand/"))
+                .doesNotContain(Program.class.getName());
+    }
+
+    @Test
+    void invalidFormulaIsNotCompiled() {
+        var formula = Formula.parse("1 +");
+        assertThat(FormulaCompiler.compile(formula)).isSameAs(formula);
+    }
+
+    private void validateTestCase(FormulaTestCase testCase) {
+        try {
+            Resolvable formula = FormulaCompiler.compile(Formula.parse(testCase.formula()));
+
+            var data = testCase.data();
+            if (data == null) {
+                data = DataContext.EMPTY;
+            }
+
+            ResolvedValue resolved = formula.resolve(data);
+            testCase.assertResult(resolved);
+
+            if (testCase.expectedName() != null) {
+                assertThat(resolved).isInstanceOf(NamedResolvedValue.class);
+                assertThat(((NamedResolvedValue) resolved).asName()).isEqualTo(testCase.expectedName());
+            }
+        } catch (Exception e) {
+            if (testCase.expectedError() == null) {
+                throw e;
+            }
+
+            assertThat(e.getMessage()).isEqualTo(testCase.expectedError());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.formula.parse.shuntingyard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.formula.Formula;
+import org.formula.Resolvable;
+import org.formula.context.DataContext;
+import org.formula.context.MutableDataContext;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class OptimizerTest {
+    private static final List<DataContext> CONTEXTS = List.of(
+            DataContext.EMPTY,
+            MutableDataContext.create().set("a", 2).set("b", 5),
+            MutableDataContext.create().set("a", 0).set("b", -1.5),
+            MutableDataContext.create().set("a", "yes"));
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "1 + @a + 2 + @b + 3     | 5",
+            "2 * (@a * 3) * @b       | 5",
+            "@a AND true             | 2",
+            "true AND @a > 1         | 3",
+            "@a OR (1 > 2)           | 2",
+            "!(!@a)                  | 2",
+            "!(!(@a < @b))           | 3",
+            "if(1 > 2; @a; @b * 2)   | 3",
+            "@a - 1 - 2              | 5",
+    })
+    void rewritesIntoShorterPrograms(String formulaText, int size) {
+        ShuntingYard formula = (ShuntingYard) Formula.parse(formulaText);
+        ShuntingYard optimized = formula.optimized();
+
+        assertThat(optimized.program().size()).isEqualTo(size);
+        assertThat(optimized.asFormula()).isEqualTo(formula.asFormula());
+        for (DataContext context : CONTEXTS) {
+            assertThat(outcome(optimized, context)).isEqualTo(outcome(formula, context));
+        }
+    }
+
+    private static Object outcome(Resolvable formula, DataContext context) {
+        try {
+            return formula.resolve(context);
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.formula.parse.shuntingyard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.formula.parse.assertions.ResolvedValueAssertions.assertResolvedValue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.formula.Formula;
+import org.formula.FormulaParser;
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.formula.context.MutableDataContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class SharedValuesTest {
+    private final AtomicInteger pureCalls = new AtomicInteger();
+    private final AtomicInteger impureCalls = new AtomicInteger();
+    private final FormulaParser parser = FormulaParser.createDefault()
+            .addCustom(p -> p
+                    .function("slow", (ResolvedValue a) -> {
+                        pureCalls.incrementAndGet();
+                        return ResolvedValue.of(a.asDecimal() + 1);
+                    })
+                    .function("roll", (ResolvedValue a) -> {
+                        impureCalls.incrementAndGet();
+                        return a;
+                    })
+                    .pure("slow"));
+
+    @Test
+    void readsRepeatedVariablesOnce() {
+        Resolvable formula = Formula.parse("max(@a, @b) + @a * 2 + if(@a > 1; @a; @b)");
+        CountingDataContext context = new CountingDataContext(MutableDataContext.create().set("a", 3).set("b", 1));
+
+        assertResolvedValue(formula, context).hasValue(12);
+        assertThat(context.gets.get()).isEqualTo(2);
+
+        assertThat(formula.resolveAll(List.of(context, context))).hasSize(2);
+        assertThat(context.gets.get()).isEqualTo(6);
+    }
+
+    @Test
+    void evaluatesRepeatedPureSubexpressionsOnce() {
+        Resolvable formula = parser.parse("slow(@a) * 2 + slow(@a) + roll(@a) + roll(@a)");
+
+        assertResolvedValue(formula, MutableDataContext.create().set("a", 2)).hasValue(13);
+        assertThat(pureCalls.get()).isEqualTo(1);
+        assertThat(impureCalls.get()).isEqualTo(2);
+
+        assertResolvedValue(parser.parse("sum(slow(@a), slow(@a), slow(@a))"),
+                MutableDataContext.create().set("a", 2)).hasValue(9);
+        assertThat(pureCalls.get()).isEqualTo(2);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = '|', value = {
+            "if(@c; slow(@a) + 1; 0) + (slow(@a) + 1)       | true  | 8 | 1",
+            "if(@c; slow(@a) + 1; 0) + (slow(@a) + 1)       | false | 4 | 1",
+            "(slow(@a) > 1 AND @c) OR slow(@a) > 1          | false | 1 | 1",
+            "if(slow(@a) > 5; 1; 2) + if(slow(@a) > 5; 1; 2) | true  | 4 | 1",
+            "slow(@a + 1.25) * 100 + slow(@a + 1.2)          | true  | 429 | 2",
+    })
+    void sharesValuesAcrossLazyOperands(String formulaText, boolean c, int expected, int calls) {
+        Resolvable formula = parser.parse(formulaText);
+        ResolvedValue result = formula.resolve(MutableDataContext.create().set("a", 2).set("c", c));
+
+        assertThat(result.asNumber()).isEqualTo(expected);
+        assertThat(pureCalls.get()).isEqualTo(calls);
+    }
+
+    static class CountingDataContext implements DataContext {
+        private final DataContext delegate;
+        final AtomicInteger gets = new AtomicInteger();
+
+        @Override
+        public ResolvedValue get(String key) {
+            gets.incrementAndGet();
+            return delegate.get(key);
+        }
+
+        @Override
+        public Stream<String> keys() {
+            return delegate.keys();
+        }
+
+        @Override
+        public Stream<ResolvedValue> search(String pattern) {
+            return delegate.search(pattern);
+        }
+
+        CountingDataContext(DataContext delegate) {
+            this.delegate = delegate;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.List;
 import org.formula.ResolvedValue;
+import org.formula.util.Decimals;
 import org.junit.jupiter.api.Test;
 
 class TokenTreeTest {
@@ -167,4 +168,70 @@ class TokenTreeTest {
                         ResolvedValue.of("<open>three four<close>"),
                         ResolvedValue.of("five"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void longestMatchAcrossBranches() {
+        var tree = TokenTree.<ResolvedValue>create()
+                .ignoreWhitespaces()
+                .add("<", ResolvedValue::of)
+                .add(anyOf("<=").repeats(1), token -> ResolvedValue.of("op:" + token));
+        assertThat(tree.parse("< <= =<")).containsExactly(
+                ResolvedValue.of("<"),
+                ResolvedValue.of("op:<="),
+                ResolvedValue.of("op:=<"));
+    }
+
+    @Test
+    void firstAddedWinsEqualLengthMatches() {
+        var tree = TokenTree.<ResolvedValue>create()
+                .add("AB", token -> ResolvedValue.of("term"))
+                .add(anyOf(ALPHA_CHARACTERS).repeats(2, 2), token -> ResolvedValue.of("pair"));
+        assertThat(tree.parse("ABCD")).containsExactly(ResolvedValue.of("term"), ResolvedValue.of("pair"));
+    }
+
+    @Test
+    void nonAsciiCharacters() {
+        var tree = TokenTree.<ResolvedValue>create()
+                .ignoreWhitespaces()
+                .add(anyOf(" \t").not().repeats(1), ResolvedValue::of);
+        assertThat(tree.parse("héllo wörld ✓")).containsExactly(
+                ResolvedValue.of("héllo"),
+                ResolvedValue.of("wörld"),
+                ResolvedValue.of("✓"));
+    }
+
+    @Test
+    void literalsBetweenCompiledTokens() {
+        var tree = TokenTree.<ResolvedValue>create()
+                .ignoreWhitespaces()
+                .add(literal("'", "'", "\\'"), ResolvedValue::of)
+                .add(WORD, ResolvedValue::of)
+                .compile();
+        assertThat(tree.parse("a'b c'd 'e\\'f'")).containsExactly(
+                ResolvedValue.of("a"),
+                ResolvedValue.of("'b c'"),
+                ResolvedValue.of("d"),
+                ResolvedValue.of("'e\\'f'"));
+    }
+
+    @Test
+    void rangeMappersReceiveTheWholeText() {
+        String text = "12 'ab' 0.1 1234567.0625 3.14159265358979323846";
+        var tree = TokenTree.<ResolvedValue>create()
+                .ignoreWhitespaces()
+                .add(literal("'", "'"), TokenMapper.range((source, start, end) -> {
+                    assertThat(source).isSameAs(text);
+                    return ResolvedValue.of(source.substring(start + 1, end - 1));
+                }))
+                .add(DECIMAL, TokenMapper.range((source, start, end) ->
+                        ResolvedValue.of(Decimals.parse(source, start, end))))
+                .add(INTEGER, TokenMapper.range((source, start, end) ->
+                        ResolvedValue.of(Integer.parseInt(source, start, end, 10))));
+        assertThat(tree.parse(text)).containsExactly(
+                ResolvedValue.of(12),
+                ResolvedValue.of("ab"),
+                ResolvedValue.of(0.1),
+                ResolvedValue.of(1234567.0625),
+                ResolvedValue.of(3.14159265358979323846));
+    }
+}
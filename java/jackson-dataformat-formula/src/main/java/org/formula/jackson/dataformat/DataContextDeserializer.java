@@ -1,17 +1,19 @@
 package org.formula.jackson.dataformat;
 
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.ObjectCodec;
-import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
 import org.formula.Resolvable;
 import org.formula.context.DataContext;
+import org.formula.context.MutableDataContext;
 
+/**
+ * Reads an object field by field from the token stream, so only the context itself is kept in memory, never a tree of
+ * the whole document. Anything but an object reads as an empty context.
+ */
 public class DataContextDeserializer extends StdDeserializer<DataContext> {
 
     protected DataContextDeserializer() {
@@ -21,17 +23,26 @@ public class DataContextDeserializer extends StdDeserializer<DataContext> {
     @Override
     public DataContext deserialize(JsonParser jsonParser, DeserializationContext deserializationContext)
             throws IOException {
-        Map<String, Resolvable> data = new HashMap<>();
+        MutableDataContext context = MutableDataContext.create();
 
-        ObjectCodec codec = jsonParser.getCodec();
-        TreeNode node = codec.readTree(jsonParser);
-        Iterator<String> fieldNameIterator = node.fieldNames();
-        while (fieldNameIterator.hasNext()) {
-            String fieldName = fieldNameIterator.next();
-            Resolvable value = codec.treeToValue(node.get(fieldName), Resolvable.class);
-            data.put(fieldName, value);
+        JsonToken token = jsonParser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = jsonParser.nextToken();
+        } else if (token != JsonToken.FIELD_NAME) {
+            jsonParser.skipChildren();
+            return context;
         }
 
-        return DataContext.of(data);
+        JsonDeserializer<Object> valueDeserializer = deserializationContext.findRootValueDeserializer(
+                deserializationContext.constructType(Resolvable.class));
+        for (; token == JsonToken.FIELD_NAME; token = jsonParser.nextToken()) {
+            String fieldName = jsonParser.currentName();
+            Object value = jsonParser.nextToken() == JsonToken.VALUE_NULL
+                    ? valueDeserializer.getNullValue(deserializationContext)
+                    : valueDeserializer.deserialize(jsonParser, deserializationContext);
+            context.set(fieldName, (Resolvable) value);
+        }
+
+        return context;
     }
 }
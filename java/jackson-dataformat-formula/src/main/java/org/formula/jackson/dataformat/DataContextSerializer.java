@@ -0,0 +1,32 @@
+package org.formula.jackson.dataformat;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.util.Iterator;
+import org.formula.context.DataContext;
+
+/**
+ * Writes a context as an object of its resolved values, one key at a time.
+ */
+public class DataContextSerializer extends StdSerializer<DataContext> {
+    private final ResolvedValueSerializer valueSerializer = new ResolvedValueSerializer();
+
+    protected DataContextSerializer() {
+        super(DataContext.class);
+    }
+
+    @Override
+    public void serialize(DataContext context, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
+            throws IOException {
+        jsonGenerator.writeStartObject(context);
+        Iterator<String> keys = context.keys().iterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            jsonGenerator.writeFieldName(key);
+            valueSerializer.serializeConstant(context.get(key), jsonGenerator, serializerProvider);
+        }
+        jsonGenerator.writeEndObject();
+    }
+}
@@ -6,6 +6,8 @@ import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 import org.formula.Resolvable;
 import org.formula.ResolvedValue;
 import org.formula.context.DataContext;
@@ -14,22 +16,44 @@ public class FormulaModule extends SimpleModule {
     private static final Version VERSION = new Version(1, 0, 0, null, null, null);
 
     public FormulaModule() {
+        this(new ResolvableDeserializer());
+    }
+
+    /**
+     * Returns a module whose formulas are only parsed the first time they are used, so loading them costs little
+     * more than reading their text. A formula that does not parse fails when it is used rather than when it is read.
+     */
+    public static FormulaModule lazy() {
+        return new FormulaModule(new ResolvableDeserializer(true, null));
+    }
+
+    /**
+     * Returns a module like {@link #lazy()} that also parses each formula on {@code warmUp} as it is read, so most
+     * of them are parsed by the time they are first used.
+     */
+    public static FormulaModule lazy(Executor warmUp) {
+        return new FormulaModule(new ResolvableDeserializer(true, Objects.requireNonNull(warmUp)));
+    }
+
+    private FormulaModule(ResolvableDeserializer resolvableDeserializer) {
         super("FormulaModule",
                 VERSION,
-                deserializers(),
+                deserializers(resolvableDeserializer),
                 serializers());
     }
 
     private static List<JsonSerializer<?>> serializers() {
         return List.of(
-
+                new ResolvedValueSerializer(),
+                new ResolvableSerializer(),
+                new DataContextSerializer()
         );
     }
 
-    private static Map<Class<?>, JsonDeserializer<?>> deserializers() {
+    private static Map<Class<?>, JsonDeserializer<?>> deserializers(ResolvableDeserializer resolvableDeserializer) {
         return Map.of(
                 ResolvedValue.class, new ResolvedValueDeserializer(),
-                Resolvable.class, new ResolvableDeserializer(),
+                Resolvable.class, resolvableDeserializer,
                 DataContext.class, new DataContextDeserializer()
         );
     }
@@ -0,0 +1,81 @@
+package org.formula.jackson.dataformat;
+
+import java.util.List;
+import java.util.Set;
+import org.formula.Formula;
+import org.formula.Resolvable;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+
+/**
+ * A formula that is parsed the first time it is needed, at most once, by whichever thread gets there first. If the
+ * text does not parse, the error is kept and every use throws it again.
+ */
+final class LazyFormula implements Resolvable {
+    private final String formula;
+    private volatile Object parsed;
+
+    static LazyFormula of(String formula) {
+        return new LazyFormula(formula);
+    }
+
+    Resolvable parsed() {
+        Object current = parsed;
+        if (current == null) {
+            synchronized (this) {
+                current = parsed;
+                if (current == null) {
+                    try {
+                        current = Formula.parse(formula);
+                    } catch (RuntimeException e) {
+                        current = e;
+                    }
+                    parsed = current;
+                }
+            }
+        }
+        if (current instanceof RuntimeException e) {
+            throw e;
+        }
+        return (Resolvable) current;
+    }
+
+    /**
+     * Parses the formula now, leaving any parse error to be thrown when it is used.
+     */
+    void warmUp() {
+        try {
+            parsed();
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    @Override
+    public ResolvedValue resolve(DataContext context) {
+        return parsed().resolve(context);
+    }
+
+    @Override
+    public List<ResolvedValue> resolveAll(List<? extends DataContext> contexts) {
+        return parsed().resolveAll(contexts);
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        return parsed().dependencies();
+    }
+
+    @Override
+    public String asFormula() {
+        return formula;
+    }
+
+    @Override
+    public String toString() {
+        return formula;
+    }
+
+    private LazyFormula(String formula) {
+        this.formula = formula;
+    }
+}
@@ -5,14 +5,27 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 import org.formula.Formula;
 import org.formula.Resolvable;
 import org.formula.ResolvedValue;
 
 public class ResolvableDeserializer extends StdDeserializer<Resolvable> {
+    private final boolean lazy;
+    private final Executor warmUp;
 
     protected ResolvableDeserializer() {
+        this(false, null);
+    }
+
+    /**
+     * @param lazy whether formulas are only parsed the first time they are used
+     * @param warmUp if not null, the executor lazy formulas are parsed on in the background as they are read
+     */
+    protected ResolvableDeserializer(boolean lazy, Executor warmUp) {
         super(Resolvable.class);
+        this.lazy = lazy;
+        this.warmUp = warmUp;
     }
 
     @Override
@@ -23,7 +36,7 @@ public class ResolvableDeserializer extends StdDeserializer<Resolvable> {
             String currentString = jp.getText();
             if (currentString.startsWith("{") && currentString.endsWith("}")) {
                 String formula = currentString.substring(1, currentString.length() - 1);
-                return Formula.parse(formula);
+                return lazy ? lazyFormula(formula) : Formula.parse(formula);
             }
         }
         if (currentToken == JsonToken.START_ARRAY) {
@@ -33,6 +46,14 @@ public class ResolvableDeserializer extends StdDeserializer<Resolvable> {
         return Resolvable.just(deserializationContext.readValue(jp, ResolvedValue.class));
     }
 
+    private Resolvable lazyFormula(String formula) {
+        LazyFormula lazyFormula = LazyFormula.of(formula);
+        if (warmUp != null) {
+            warmUp.execute(lazyFormula::warmUp);
+        }
+        return lazyFormula;
+    }
+
     @Override
     public Resolvable getNullValue(DeserializationContext ctxt) {
         return Resolvable.empty();
@@ -0,0 +1,44 @@
+package org.formula.jackson.dataformat;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.util.List;
+import org.formula.Resolvable;
+import org.formula.ResolvableList;
+import org.formula.ResolvedValue;
+import org.formula.StaticResolvable;
+
+/**
+ * Writes formulas as {@code "{formula}"}, the way {@link ResolvableDeserializer} reads them. Constants are written as
+ * their value, and lists as arrays. Constant text that is itself wrapped in braces is written as a formula quoting it,
+ * so it does not read back as a formula.
+ */
+public class ResolvableSerializer extends StdSerializer<Resolvable> {
+    private final ResolvedValueSerializer valueSerializer = new ResolvedValueSerializer();
+
+    protected ResolvableSerializer() {
+        super(Resolvable.class);
+    }
+
+    @Override
+    public void serialize(Resolvable resolvable, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
+            throws IOException {
+        if (resolvable == Resolvable.empty()) {
+            jsonGenerator.writeNull();
+        } else if (resolvable instanceof StaticResolvable) {
+            ResolvedValue value = resolvable.resolve();
+            valueSerializer.serializeConstant(value, jsonGenerator, serializerProvider);
+        } else if (resolvable instanceof ResolvableList list) {
+            List<Resolvable> values = list.asList();
+            jsonGenerator.writeStartArray(resolvable, values.size());
+            for (Resolvable value : values) {
+                serialize(value, jsonGenerator, serializerProvider);
+            }
+            jsonGenerator.writeEndArray();
+        } else {
+            jsonGenerator.writeString("{" + resolvable.asFormula() + "}");
+        }
+    }
+}
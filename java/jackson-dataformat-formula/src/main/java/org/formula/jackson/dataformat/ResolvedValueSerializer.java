@@ -0,0 +1,74 @@
+package org.formula.jackson.dataformat;
+
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.util.List;
+import org.formula.ResolvedValue;
+
+/**
+ * Writes values with their native types, so numbers, decimals and booleans stay numbers, decimals and booleans in
+ * binary formats too. Lists are written as arrays; named and quoted values as the value they hold.
+ */
+public class ResolvedValueSerializer extends StdSerializer<ResolvedValue> {
+
+    protected ResolvedValueSerializer() {
+        super(ResolvedValue.class);
+    }
+
+    @Override
+    public void serialize(ResolvedValue value, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
+            throws IOException {
+        Object object = value.asObject();
+        if (object == null) {
+            jsonGenerator.writeNull();
+        } else if (object instanceof Integer number) {
+            jsonGenerator.writeNumber(number);
+        } else if (object instanceof Double decimal) {
+            jsonGenerator.writeNumber(decimal);
+        } else if (object instanceof Boolean bool) {
+            jsonGenerator.writeBoolean(bool);
+        } else if (object instanceof List<?> values) {
+            jsonGenerator.writeStartArray(value, values.size());
+            for (Object element : values) {
+                serialize((ResolvedValue) element, jsonGenerator, serializerProvider);
+            }
+            jsonGenerator.writeEndArray();
+        } else {
+            jsonGenerator.writeString(object.toString());
+        }
+    }
+
+    /**
+     * Writes {@code value} so that {@link ResolvableDeserializer} reads it back as a constant. Text that would read
+     * back as a formula, like {@code "{1 + 1}"}, is written as a formula quoting that text instead.
+     */
+    void serializeConstant(ResolvedValue value, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
+            throws IOException {
+        Object object = value.asObject();
+        if (object instanceof List<?> values) {
+            jsonGenerator.writeStartArray(value, values.size());
+            for (Object element : values) {
+                serializeConstant((ResolvedValue) element, jsonGenerator, serializerProvider);
+            }
+            jsonGenerator.writeEndArray();
+        } else if (object instanceof String text && text.startsWith("{") && text.endsWith("}")) {
+            jsonGenerator.writeString("{" + quote(text, jsonGenerator) + "}");
+        } else {
+            serialize(value, jsonGenerator, serializerProvider);
+        }
+    }
+
+    private static String quote(String text, JsonGenerator jsonGenerator) throws JsonGenerationException {
+        if (!text.contains("'")) {
+            return "'" + text + "'";
+        }
+        if (!text.contains("\"")) {
+            return "\"" + text + "\"";
+        }
+        throw new JsonGenerationException("Cannot write text that reads as a formula and holds both quotes: " + text,
+                jsonGenerator);
+    }
+}
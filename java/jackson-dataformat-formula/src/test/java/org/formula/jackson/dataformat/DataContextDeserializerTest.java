@@ -74,4 +74,35 @@ class DataContextDeserializerTest {
         DataContext actual = mapper.readValue(json, DataContext.class);
         assertThat(actual.get("formula")).isEqualTo(ResolvedValue.of("Test"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("null and list values")
+    void nullAndListValues() throws JsonProcessingException {
+        String json = "{\"a\":null, \"b\":[1, \"{@c}\", [2, 3]], \"c\":4}";
+        DataContext actual = mapper.readValue(json, DataContext.class);
+        assertThat(actual.get("a")).isEqualTo(ResolvedValue.none());
+        assertThat(actual.get("b").asList()).containsExactly(
+                ResolvedValue.of(1), ResolvedValue.of(4), ResolvedValue.of(2), ResolvedValue.of(3));
+    }
+
+    @Test
+    @DisplayName("nested in another object")
+    void nestedInAnotherObject() throws JsonProcessingException {
+        String json = "{\"before\":1, \"data\":{\"a\":[true], \"b\":2}, \"after\":3}";
+        Holder actual = mapper.readValue(json, Holder.class);
+        assertThat(actual.data().keys()).containsExactlyInAnyOrder("a", "b");
+        assertThat(actual.data().get("b")).isEqualTo(ResolvedValue.of(2));
+        assertThat(actual.after()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("not an object")
+    void notAnObject() throws JsonProcessingException {
+        Holder actual = mapper.readValue("{\"data\":[{\"a\":1}], \"after\":3}", Holder.class);
+        assertThat(actual.data().keys()).isEmpty();
+        assertThat(actual.after()).isEqualTo(3);
+    }
+
+    record Holder(int before, DataContext data, int after) {
+    }
+}
@@ -0,0 +1,38 @@
+package org.formula.jackson.dataformat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.formula.Formula;
+import org.formula.ResolvedValue;
+import org.formula.context.DataContext;
+import org.formula.context.MutableDataContext;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class DataContextSerializerTest {
+    private static ObjectMapper mapper;
+
+    @BeforeAll
+    public static void setUp() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new FormulaModule());
+    }
+
+    @Test
+    void resolvedValues() throws JsonProcessingException {
+        DataContext context = MutableDataContext.create()
+                .set("a", 2)
+                .set("sum", Formula.parse("@a + 0.5"))
+                .push("list", "x")
+                .push("list", true);
+        String json = mapper.writeValueAsString(context);
+        DataContext actual = mapper.readValue(json, DataContext.class);
+
+        assertThat(actual.keys()).containsExactlyInAnyOrder("a", "sum", "list");
+        assertThat(actual.get("a")).isEqualTo(ResolvedValue.of(2));
+        assertThat(actual.get("sum")).isEqualTo(ResolvedValue.of(2.5));
+        assertThat(actual.get("list").asList()).containsExactly(ResolvedValue.of("x"), ResolvedValue.TRUE);
+    }
+}
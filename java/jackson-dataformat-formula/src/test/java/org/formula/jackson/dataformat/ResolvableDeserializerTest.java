@@ -1,12 +1,20 @@
 package org.formula.jackson.dataformat;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.formula.Formula;
 import org.formula.Resolvable;
 import org.formula.ResolvedValue;
+import org.formula.context.MutableDataContext;
+import org.formula.parse.tree.ParseException;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -72,4 +80,39 @@ class ResolvableDeserializerTest {
 
         assertThat(actual).isEqualTo(expected);
     }
-}
\ No newline at end of file
+
+    @Test
+    void lazyExpression() throws JsonProcessingException {
+        ObjectMapper lazyMapper = new ObjectMapper().registerModule(FormulaModule.lazy());
+        Resolvable actual = lazyMapper.readValue("\"{@a + 1}\"", Resolvable.class);
+        Resolvable malformed = lazyMapper.readValue("\"{@a ~}\"", Resolvable.class);
+
+        assertThat(actual.asFormula()).isEqualTo("@a + 1");
+        assertThat(actual.resolve(MutableDataContext.create().set("a", 2))).isEqualTo(ResolvedValue.of(3));
+        assertThat(actual.dependencies()).containsExactly("a");
+        assertThat(((LazyFormula) actual).parsed()).isSameAs(((LazyFormula) actual).parsed());
+        assertThatThrownBy(malformed::resolve).isInstanceOf(ParseException.class);
+        Throwable error = catchThrowable(malformed::resolve);
+        assertThat(catchThrowable(malformed::dependencies)).isSameAs(error);
+    }
+
+    @Test
+    void lazyExpressionWarmUp() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        ObjectMapper lazyMapper = new ObjectMapper().registerModule(FormulaModule.lazy(tasks::add));
+        Resolvable[] actual = lazyMapper.readValue("[\"{1 + 1}\", 3, \"{@a ~}\"]", Resolvable[].class);
+
+        assertThat(tasks).hasSize(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (Runnable task : tasks) {
+                executor.submit(task).get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(actual[0].resolve()).isEqualTo(ResolvedValue.of(2));
+        assertThatThrownBy(actual[2]::resolve).isInstanceOf(ParseException.class);
+        assertThat(catchThrowable(actual[2]::resolve)).isSameAs(catchThrowable(actual[2]::dependencies));
+    }
+}
@@ -0,0 +1,62 @@
+package org.formula.jackson.dataformat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.formula.Formula;
+import org.formula.Resolvable;
+import org.formula.context.DataContext;
+import org.formula.context.MutableDataContext;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ResolvableSerializerTest {
+    private static ObjectMapper mapper;
+
+    @BeforeAll
+    public static void setUp() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new FormulaModule());
+    }
+
+    @Test
+    void formula() throws JsonProcessingException {
+        Resolvable formula = Formula.parse("@a + 1");
+        String json = mapper.writeValueAsString(formula);
+
+        assertThat(json).isEqualTo("\"{@a + 1}\"");
+        assertThat(mapper.readValue(json, Resolvable.class)).isEqualTo(formula);
+    }
+
+    @Test
+    void constantsAndLists() throws JsonProcessingException {
+        Resolvable list = Resolvable.concat(Resolvable.just(1), Resolvable.just("a"), Formula.parse("@b"));
+        String json = mapper.writeValueAsString(list);
+
+        assertThat(json).isEqualTo("[1,\"a\",\"{@b}\"]");
+        assertThat(mapper.readValue(json, Resolvable.class)).isEqualTo(list);
+        assertThat(mapper.writeValueAsString(Resolvable.empty())).isEqualTo("null");
+    }
+
+    @Test
+    void textThatLooksLikeAFormulaStaysText() throws JsonProcessingException {
+        String json = mapper.writeValueAsString(Resolvable.just("{1 + 1}"));
+
+        assertThat(json).isEqualTo("\"{'{1 + 1}'}\"");
+        assertThat(mapper.readValue(json, Resolvable.class).resolve().asText()).isEqualTo("{1 + 1}");
+        assertThat(mapper.writeValueAsString(Resolvable.just("{'a'}"))).isEqualTo("\"{\\\"{'a'}\\\"}\"");
+
+        DataContext context = mapper.readValue(
+                mapper.writeValueAsString(MutableDataContext.create().set("a", Resolvable.just("{@b}"))),
+                DataContext.class);
+        assertThat(context.get("a").asText()).isEqualTo("{@b}");
+    }
+
+    @Test
+    void textWithBothQuotesThatLooksLikeAFormulaIsNotWritten() {
+        assertThatThrownBy(() -> mapper.writeValueAsString(Resolvable.just("{'\"}")))
+                .isInstanceOf(JsonProcessingException.class);
+    }
+}
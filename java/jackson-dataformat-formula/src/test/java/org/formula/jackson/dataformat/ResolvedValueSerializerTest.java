@@ -0,0 +1,42 @@
+package org.formula.jackson.dataformat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.formula.NamedResolvedValue;
+import org.formula.QuotedTextResolvedValue;
+import org.formula.ResolvedValue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ResolvedValueSerializerTest {
+    private static ObjectMapper mapper;
+
+    @BeforeAll
+    public static void setUp() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new FormulaModule());
+    }
+
+    @Test
+    void nativeTypes() throws JsonProcessingException {
+        assertThat(mapper.writeValueAsString(ResolvedValue.of("Test"))).isEqualTo("\"Test\"");
+        assertThat(mapper.writeValueAsString(ResolvedValue.of(5))).isEqualTo("5");
+        assertThat(mapper.writeValueAsString(ResolvedValue.of(1.0 / 3))).isEqualTo("0.3333333333333333");
+        assertThat(mapper.writeValueAsString(ResolvedValue.TRUE)).isEqualTo("true");
+        assertThat(mapper.writeValueAsString(ResolvedValue.none())).isEqualTo("null");
+        assertThat(mapper.writeValueAsString(QuotedTextResolvedValue.of("a b", "'", "'"))).isEqualTo("\"a b\"");
+        assertThat(mapper.writeValueAsString(NamedResolvedValue.of(ResolvedValue.of(2), "two", "[", "]")))
+                .isEqualTo("2");
+    }
+
+    @Test
+    void list() throws JsonProcessingException {
+        ResolvedValue value = ResolvedValue.of(ResolvedValue.of(1), ResolvedValue.of("a"), ResolvedValue.of(2.5));
+        String json = mapper.writeValueAsString(value);
+
+        assertThat(json).isEqualTo("[1,\"a\",2.5]");
+        assertThat(mapper.readValue(json, ResolvedValue.class)).isEqualTo(value);
+    }
+}